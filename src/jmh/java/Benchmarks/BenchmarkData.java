@@ -0,0 +1,150 @@
+package Benchmarks;
+
+import Classes.Query;
+import Classes.TokenNormalizer;
+import IndexingLucene.CorpusDocument;
+import IndexingLucene.CorpusGenerator;
+import IndexingLucene.IndexingProfile;
+import IndexingLucene.MyIndexReader;
+import IndexingLucene.MyIndexWriter;
+import IndexingLucene.PreProcessedCorpusReader;
+import Search.TopicParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic fixture of the benchmarks: a corpus and topics written by CorpusGenerator into a temporary
+ * directory, and optionally their index. Everything derives from a fixed seed, so every fork and every run
+ * measures the same data.
+ */
+public final class BenchmarkData implements Closeable {
+
+    public static final long SEED = 2140;
+    public static final int DOCS = 20_000;
+    public static final int VOCABULARY = 50_000;
+    public static final int TOPICS = 64;
+
+    public final Path dir;
+    public final Path corpus;
+    public final Path topics;
+    // Null unless the fixture was created with its index
+    public final Path index;
+
+    private BenchmarkData(Path dir, Path corpus, Path topics, Path index) {
+        this.dir = dir;
+        this.corpus = corpus;
+        this.topics = topics;
+        this.index = index;
+    }
+
+    /**
+     * The generator of every fixture with the given number of documents
+     */
+    public static CorpusGenerator generator(int documents) {
+        return new CorpusGenerator()
+                .setSeed(SEED)
+                .setDocuments(documents)
+                .setVocabulary(VOCABULARY)
+                .setLengths(CorpusGenerator.LengthModel.UNIFORM, 50, 450)
+                .setTopics(TOPICS);
+    }
+
+    /**
+     * Generate a corpus of documents and its topics, and index it if withIndex
+     */
+    public static BenchmarkData create(int documents, boolean withIndex) throws IOException {
+        Path dir = Files.createTempDirectory("hw3-bench");
+        CorpusGenerator generator = generator(documents);
+        Path corpus = dir.resolve("results.trectext");
+        Path topics = dir.resolve("topics.txt");
+        generator.writeCorpus(corpus);
+        generator.writeTopics(topics);
+        Path index = null;
+        if (withIndex) {
+            index = dir.resolve("index");
+            buildIndex(corpus, index, IndexingProfile.defaults());
+        }
+        return new BenchmarkData(dir, corpus, topics, index);
+    }
+
+    /**
+     * Index corpus into indexDir the way MyIndexWriter's serial mode reads a corpus
+     */
+    public static long buildIndex(Path corpus, Path indexDir, IndexingProfile profile) throws IOException {
+        MyIndexWriter writer = new MyIndexWriter(indexDir, 0, profile);
+        PreProcessedCorpusReader reader = new PreProcessedCorpusReader(corpus);
+        CorpusDocument doc = new CorpusDocument();
+        long count = 0;
+        while (reader.nextDocument(doc)) {
+            writer.index(doc);
+            count++;
+        }
+        writer.close();
+        return count;
+    }
+
+    /**
+     * Content of every document of the corpus, in corpus order
+     */
+    public String[] documents() throws IOException {
+        List<String> docs = new ArrayList<>();
+        PreProcessedCorpusReader reader = new PreProcessedCorpusReader(corpus);
+        CorpusDocument doc = new CorpusDocument();
+        while (reader.nextDocument(doc)) docs.add(doc.content().toString());
+        return docs.toArray(new String[0]);
+    }
+
+    /**
+     * The topics as queries made of the given fields
+     */
+    public Query[] queries(Set<TopicParser.Field> fields) throws IOException {
+        List<Query> queries = new ArrayList<>();
+        TokenNormalizer normalizer = new TokenNormalizer(Collections.emptySet(), 1 << 14);
+        try (TopicParser parser = new TopicParser(topics, fields)) {
+            TopicParser.Topic topic;
+            while ((topic = parser.nextTopic()) != null) queries.add(TopicParser.toQuery(topic, normalizer));
+        }
+        return queries.toArray(new Query[0]);
+    }
+
+    /**
+     * Terms whose document frequency is closest to df, at most count of them
+     */
+    public static String[] termsWithDf(MyIndexReader reader, int df, int count) throws IOException {
+        int[] dfs = new int[VOCABULARY];
+        List<Integer> ranks = new ArrayList<>();
+        for (int r = 0; r < VOCABULARY; r++) {
+            dfs[r] = reader.DocFreq(CorpusGenerator.term(r));
+            if (dfs[r] > 0) ranks.add(r);
+        }
+        ranks.sort(Comparator.comparingInt((Integer r) -> Math.abs(dfs[r] - df)).thenComparingInt(r -> r));
+        String[] terms = new String[Math.min(count, ranks.size())];
+        for (int i = 0; i < terms.length; i++) terms[i] = CorpusGenerator.term(ranks.get(i));
+        return terms;
+    }
+
+    /**
+     * Delete the fixture directory
+     */
+    @Override
+    public void close() throws IOException {
+        delete(dir);
+    }
+
+    public static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+}
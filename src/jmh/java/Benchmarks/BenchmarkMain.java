@@ -0,0 +1,119 @@
+package Benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Run the benchmarks with the GC profiler, so every benchmark also reports its allocation rate
+ * (gc.alloc.rate.norm is bytes per operation), write the results to target/jmh-result.csv and compare them
+ * with the committed baseline, src/jmh/baseline.csv.
+ * <p>
+ * Usage: BenchmarkMain [JMH options and benchmark regex], e.g. "Stemmer -f 1 -wi 2". A single argument is split
+ * on spaces, so the options can come through one Maven property. After an intentional change, copy the result
+ * file over the baseline.
+ */
+public class BenchmarkMain {
+
+    public static final Path RESULT = Paths.get("target", "jmh-result.csv");
+    public static final Path BASELINE = Paths.get("src", "jmh", "baseline.csv");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1) args = args[0].trim().isEmpty() ? new String[0] : args[0].trim().split("\\s+");
+        Files.createDirectories(RESULT.getParent());
+        OptionsBuilder builder = new OptionsBuilder();
+        // Lucene 6 reaches into java.nio to unmap its files, newer JVMs only allow it when opened
+        if (!System.getProperty("java.specification.version").startsWith("1."))
+            builder.jvmArgsAppend("--add-opens", "java.base/java.nio=ALL-UNNAMED",
+                    "--add-opens", "java.base/jdk.internal.ref=ALL-UNNAMED");
+        Options options = builder
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.CSV)
+                .result(RESULT.toString())
+                .build();
+        new Runner(options).run();
+        if (Files.exists(BASELINE)) compare(BASELINE, RESULT);
+    }
+
+    /**
+     * Print every result next to its baseline, matched on benchmark name and parameters
+     */
+    public static void compare(Path baselineFile, Path resultFile) throws IOException {
+        Map<String, String[]> baseline = read(baselineFile);
+        Map<String, String[]> result = read(resultFile);
+        System.out.println();
+        System.out.println(String.format("%-75s %14s %14s %8s  %s", "Benchmark", "Baseline", "Current", "Change", "Unit"));
+        for (Map.Entry<String, String[]> entry : result.entrySet()) {
+            String[] current = entry.getValue();
+            String[] base = baseline.get(entry.getKey());
+            double score = Double.parseDouble(current[0]);
+            if (base == null) {
+                System.out.println(String.format("%-75s %14s %14.3f %8s  %s", entry.getKey(), "-", score, "", current[1]));
+                continue;
+            }
+            double baseScore = Double.parseDouble(base[0]);
+            String change = baseScore == 0 ? "" : String.format("%+.1f%%", 100 * (score - baseScore) / baseScore);
+            System.out.println(String.format("%-75s %14.3f %14.3f %8s  %s", entry.getKey(), baseScore, score, change, current[1]));
+        }
+    }
+
+    /**
+     * Results of a JMH CSV file as "benchmark [params]" -> {score, unit}
+     */
+    private static Map<String, String[]> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Map<String, String[]> results = new LinkedHashMap<>();
+        if (lines.isEmpty()) return results;
+        List<String> header = parseLine(lines.get(0));
+        int score = header.indexOf("Score"), unit = header.indexOf("Unit");
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> fields = parseLine(line);
+            if (fields.size() < header.size()) continue;
+            StringBuilder key = new StringBuilder(fields.get(0).replace("Benchmarks.", ""));
+            for (int i = 0; i < header.size(); i++)
+                if (header.get(i).startsWith("Param: ") && !fields.get(i).isEmpty())
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+            results.put(key.toString(), new String[]{fields.get(score), fields.get(unit)});
+        }
+        return results;
+    }
+
+    /**
+     * Fields of one CSV line, quotes removed
+     */
+    private static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                // "" inside quotes is a quote
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+}
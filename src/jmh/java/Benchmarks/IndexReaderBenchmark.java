@@ -0,0 +1,84 @@
+package Benchmarks;
+
+import IndexingLucene.MyIndexReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyIndexReader lookups for terms of low, medium and high document frequency. Each operation covers one term:
+ * its posting list, or the length or docno of every document in it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexReaderBenchmark {
+
+    @Param({"low", "medium", "high"})
+    public String df;
+
+    private BenchmarkData data;
+    private MyIndexReader reader;
+    private String[] terms;
+    private int[][] docids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = BenchmarkData.create(BenchmarkData.DOCS, true);
+        reader = new MyIndexReader(data.index);
+        int target = df.equals("low") ? 5 : df.equals("medium") ? BenchmarkData.DOCS / 100 : BenchmarkData.DOCS;
+        terms = BenchmarkData.termsWithDf(reader, target, 16);
+        docids = new int[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            int[][] postings = reader.getPostingList(terms[i]);
+            docids[i] = new int[postings.length];
+            for (int p = 0; p < postings.length; p++) docids[i][p] = postings[p][0];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        data.close();
+    }
+
+    private int nextTerm() {
+        int i = next;
+        next = (i + 1) % terms.length;
+        return i;
+    }
+
+    @Benchmark
+    public int[][] getPostingList() throws IOException {
+        return reader.getPostingList(terms[nextTerm()]);
+    }
+
+    @Benchmark
+    public void docLength(Blackhole bh) throws IOException {
+        for (int docid : docids[nextTerm()]) bh.consume(reader.docLength(docid));
+    }
+
+    @Benchmark
+    public void getDocno(Blackhole bh) throws IOException {
+        for (int docid : docids[nextTerm()]) bh.consume(reader.getDocno(docid));
+    }
+
+}
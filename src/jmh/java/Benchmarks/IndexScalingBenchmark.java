@@ -0,0 +1,70 @@
+package Benchmarks;
+
+import IndexingLucene.IndexingProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to index a whole generated corpus, read from disk with PreProcessedCorpusReader, at growing corpus
+ * sizes. Larger sizes can be given on the command line, e.g. -p documents=1000000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class IndexScalingBenchmark {
+
+    @Param({"10000", "100000"})
+    public int documents;
+
+    @Param({"default", "bulk"})
+    public String profile;
+
+    private BenchmarkData data;
+    private Path indexDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = BenchmarkData.create(documents, false);
+    }
+
+    @Setup(Level.Iteration)
+    public void newIndexDir() throws IOException {
+        indexDir = Files.createTempDirectory(data.dir, "index");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteIndex() throws IOException {
+        BenchmarkData.delete(indexDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        data.close();
+    }
+
+    @Benchmark
+    public long buildIndex() throws IOException {
+        return BenchmarkData.buildIndex(data.corpus, indexDir,
+                profile.equals("bulk") ? IndexingProfile.bulkLoad() : IndexingProfile.defaults());
+    }
+
+}
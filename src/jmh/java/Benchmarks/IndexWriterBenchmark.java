@@ -0,0 +1,73 @@
+package Benchmarks;
+
+import IndexingLucene.CorpusGenerator;
+import IndexingLucene.IndexingProfile;
+import IndexingLucene.MyIndexWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Documents per second through MyIndexWriter.index in serial mode. Every iteration writes a new index, closing
+ * it (flush, merges and the side dictionaries) is left out of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IndexWriterBenchmark {
+
+    @Param({"default", "bulk"})
+    public String profile;
+
+    private String[] docs;
+    private Path indexDir;
+    private MyIndexWriter writer;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (BenchmarkData data = BenchmarkData.create(4096, false)) {
+            docs = data.documents();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void openWriter() throws IOException {
+        indexDir = Files.createTempDirectory("hw3-bench-writer");
+        next = 0;
+        writer = new MyIndexWriter(indexDir, 0,
+                profile.equals("bulk") ? IndexingProfile.bulkLoad() : IndexingProfile.defaults());
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWriter() throws IOException {
+        writer.close();
+        BenchmarkData.delete(indexDir);
+    }
+
+    @Benchmark
+    public void index() throws IOException {
+        // Content cycles through the fixture, docnos stay unique like in a real corpus
+        int d = next++;
+        writer.index(CorpusGenerator.docno(d), docs[d % docs.length]);
+    }
+
+}
@@ -0,0 +1,69 @@
+package Benchmarks;
+
+import Classes.Document;
+import Classes.Query;
+import IndexingLucene.MyIndexReader;
+import Search.QueryRetrievalModel;
+import Search.TopicParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the generated topic titles at growing corpus sizes, each size indexed once per fork. Larger sizes
+ * can be given on the command line, e.g. -p documents=1000000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetrievalScalingBenchmark {
+
+    @Param({"10000", "100000"})
+    public int documents;
+
+    private BenchmarkData data;
+    private MyIndexReader reader;
+    private QueryRetrievalModel model;
+    private Query[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = BenchmarkData.create(documents, true);
+        reader = new MyIndexReader(data.index);
+        model = new QueryRetrievalModel(reader);
+        queries = data.queries(EnumSet.of(TopicParser.Field.TITLE));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        data.close();
+    }
+
+    @Benchmark
+    public List<Document> retrieveQuery() throws IOException {
+        Query query = queries[next];
+        next = (next + 1) % queries.length;
+        return model.retrieveQuery(query, 20);
+    }
+
+}
@@ -0,0 +1,85 @@
+package Benchmarks;
+
+import Classes.Stemmer;
+import Classes.TokenNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Words stemmed per second: a new Stemmer per word as ExtractQuery used to do, one reused Stemmer, and the
+ * memoizing TokenNormalizer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StemmerBenchmark {
+
+    private static final int WORD_COUNT = 62;
+    private static final String[] WORDS = {
+            "caresses", "ponies", "agreed", "disabled", "matting", "meetings", "relational", "conditional",
+            "rational", "valenci", "hesitanci", "digitizer", "conformabli", "radicalli", "differentli", "vileli",
+            "analogousli", "vietnamization", "predication", "operator", "feudalism", "decisiveness", "hopefulness",
+            "callousness", "formaliti", "sensitiviti", "sensibiliti", "triplicate", "formative", "formalize",
+            "electriciti", "electrical", "hopeful", "goodness", "revival", "allowance", "inference", "airliner",
+            "gyroscopic", "adjustable", "defensible", "irritant", "replacement", "adjustment", "dependent",
+            "adoption", "homologou", "communism", "activate", "angulariti", "homologous", "effective", "bowdlerize",
+            "probate", "rate", "cease", "controll", "roll", "chancellor", "markets", "trading", "running"};
+
+    private char[][] chars;
+    private Stemmer stemmer;
+    private TokenNormalizer normalizer;
+
+    @Setup
+    public void setUp() {
+        if (WORDS.length != WORD_COUNT) throw new IllegalStateException("WORD_COUNT must be " + WORDS.length);
+        chars = new char[WORDS.length][];
+        for (int i = 0; i < WORDS.length; i++) chars[i] = WORDS[i].toCharArray();
+        stemmer = new Stemmer();
+        normalizer = new TokenNormalizer(Collections.emptySet(), 1024);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORD_COUNT)
+    public void newStemmerPerWord(Blackhole bh) {
+        for (char[] word : chars) {
+            Stemmer s = new Stemmer();
+            s.add(word, word.length);
+            s.stem();
+            bh.consume(s.toString());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORD_COUNT)
+    public void reusedStemmer(Blackhole bh) {
+        for (char[] word : chars) {
+            stemmer.reset();
+            stemmer.add(word, 0, word.length);
+            stemmer.stem();
+            bh.consume(stemmer.getResultLength());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORD_COUNT)
+    public void memoizedNormalizer(Blackhole bh) {
+        for (String word : WORDS) bh.consume(normalizer.normalize(word, 0, word.length()));
+    }
+
+}
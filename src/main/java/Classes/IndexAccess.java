@@ -0,0 +1,95 @@
+package Classes;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Read access to an index, whatever it is stored in. The retrieval models only use these methods,
+ * so any backend can be searched: IndexingLucene.MyIndexReader (the Lucene index),
+ * IndexingCompact.CompactIndexReader (the memory-mapped compact index) or
+ * IndexingCompact.MemoryIndexReader (a whole index loaded into arrays).
+ */
+public interface IndexAccess extends Closeable {
+
+	/**
+	 * Identifies the version of the index this reader sees, it changes whenever the index is rebuilt
+	 * or updated. Results computed on one version are stale on another.
+	 */
+	long getIndexVersion();
+
+	/**
+	 * Total number of tokens in the collection.
+	 */
+	long getTotalContentLength();
+
+	/**
+	 * One more than the largest docid in the index.
+	 */
+	int maxDoc();
+
+	/**
+	 * Get the (non-negative) integer docid for the requested docno, -1 if it is not in the index.
+	 */
+	int getDocid( String docno ) throws IOException;
+
+	/**
+	 * Retrive the docno for the integer docid.
+	 */
+	String getDocno( int docid ) throws IOException;
+
+	/**
+	 * Resolve many docids at once, the result keeps the order of the input.
+	 */
+	String[] getDocnos( int[] docids ) throws IOException;
+
+	/**
+	 * Resolve many docnos at once, the result keeps the order of the input.
+	 */
+	int[] getDocids( String[] docnos ) throws IOException;
+
+	/**
+	 * Posting list of the token as {docid, frequency} pairs ranked by docid, null if the token is not in the index.
+	 */
+	int[][] getPostingList( String token ) throws IOException;
+
+	/**
+	 * Posting list of the token as parallel docid/freq arrays ranked by docid, null if the token is not in the index.
+	 */
+	PostingList getPostings( String token ) throws IOException;
+
+	/**
+	 * Walk the posting list of the token without loading it, null if the token is not in the index.
+	 */
+	PostingsIterator openPostings( String token ) throws IOException;
+
+	/**
+	 * Return the number of documents that contains the token.
+	 */
+	int DocFreq( String token ) throws IOException;
+
+	/**
+	 * Return the total number of times the token appears in the collection.
+	 */
+	long CollectionFreq( String token ) throws IOException;
+
+	/**
+	 * Return the largest frequency of the token in any one document, 0 if the token is not in the index.
+	 */
+	int maxTermFreq( String token ) throws IOException;
+
+	/**
+	 * Return the length of the shortest document that contains the token, 0 if the token is not in the index.
+	 */
+	int minDocLength( String token ) throws IOException;
+
+	/**
+	 * Return the length of the requested document.
+	 */
+	int docLength( int docid ) throws IOException;
+
+	/**
+	 * Lengths of the first count documents of docids at once, lengths[i] is the length of docids[i].
+	 */
+	void docLength( int[] docids, int[] lengths, int count ) throws IOException;
+
+}
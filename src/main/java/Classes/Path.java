@@ -11,6 +11,9 @@ public class Path {
 	public static String IndexTextDir="data//indextext//";// address of generated Text indexing.
 	public static String IndexWebDir="data//indexweb//";// address of generated Web indexing.
 	
+	public static String CompactTextDir="data//compacttext//";// address of generated Text compact index.
+	public static String CompactWebDir="data//compactweb//";// address of generated Web compact index.
+	
 	public static String TopicDir="data//topics.txt";// address of topics.txt.
 
 }
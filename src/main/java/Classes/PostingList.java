@@ -0,0 +1,134 @@
+package Classes;
+
+public class PostingList {
+	// Posting list of one term as parallel arrays, ranked by docid from the smallest to the largest
+
+	private final int[] docids;
+	private final int[] freqs;
+	// First posting in the arrays, non-zero when the list is a range of arrays shared by many terms
+	private final int offset;
+	private final int size;
+	// The arrays belong to this list alone, rather than being shared with other lists
+	private final boolean ownsArrays;
+	
+	/**
+	 * A posting list in the first size entries of arrays of its own, which may be longer.
+	 */
+	public PostingList( int[] docids, int[] freqs, int size ) {
+		this(docids, freqs, 0, size, true);
+	}
+	
+	/**
+	 * A posting list in a range of arrays shared by many terms, the range may start at 0.
+	 */
+	public PostingList( int[] docids, int[] freqs, int offset, int size ) {
+		this(docids, freqs, offset, size, false);
+	}
+	
+	private PostingList( int[] docids, int[] freqs, int offset, int size, boolean ownsArrays ) {
+		this.docids = docids;
+		this.freqs = freqs;
+		this.offset = offset;
+		this.size = size;
+		this.ownsArrays = ownsArrays;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public int docid( int ix ) {
+		return docids[offset + ix];
+	}
+	
+	public int freq( int ix ) {
+		return freqs[offset + ix];
+	}
+	
+	public long collectionFreq() {
+		long cf = 0;
+		for (int ix = 0; ix < size; ix++)
+			cf += freqs[offset + ix];
+		return cf;
+	}
+	
+	/**
+	 * Rough memory used by this posting list, in bytes. Arrays of its own count whole, a range of shared
+	 * arrays only counts its own postings.
+	 */
+	public long ramBytesUsed() {
+		return 24 + 2 * (16 + 4L * (ownsArrays ? docids.length : size));
+	}
+	
+	/**
+	 * Walk this posting list as a PostingsIterator, advance gallops then binary searches the arrays
+	 */
+	public PostingsIterator iterator() {
+		return new ArrayIterator();
+	}
+	
+	private class ArrayIterator implements PostingsIterator {
+		private int pos = -1;
+		
+		@Override
+		public int docFreq() {
+			return size;
+		}
+		
+		@Override
+		public int docid() {
+			return pos < 0 ? -1 : pos < size ? docids[offset + pos] : NO_MORE_DOCS;
+		}
+		
+		@Override
+		public int freq() {
+			return freqs[offset + pos];
+		}
+		
+		@Override
+		public int nextDoc() {
+			if (pos < size)
+				pos++;
+			return docid();
+		}
+		
+		@Override
+		public int advance( int target ) {
+			if (docid() >= target)
+				return docid();
+			int start = pos + 1;
+			if (start >= size || docids[offset + start] >= target) {
+				pos = Math.min(start, size);
+				return docid();
+			}
+			int step = 1, low = start, high = start + 1;
+			while (high < size && docids[offset + high] < target) {
+				low = high;
+				step <<= 1;
+				high = start + step;
+			}
+			high = Math.min(high, size);
+			// docid(low) < target, docid(high) >= target or high == size
+			while (low + 1 < high) {
+				int mid = (low + high) >>> 1;
+				if (docids[offset + mid] < target)
+					low = mid;
+				else
+					high = mid;
+			}
+			pos = high;
+			return docid();
+		}
+	}
+	
+	/**
+	 * The same posting list in the int[][] layout of MyIndexReader.getPostingList
+	 */
+	public int[][] toArray() {
+		int[][] posting = new int[size][];
+		for (int ix = 0; ix < size; ix++)
+			posting[ix] = new int[] { docids[offset + ix], freqs[offset + ix] };
+		return posting;
+	}
+	
+}
@@ -0,0 +1,43 @@
+package Classes;
+
+import java.io.IOException;
+
+/**
+ * Walk the posting list of one term in docid order without loading it, the way Lucene's PostingsEnum does.
+ * Backends that store postings in blocks with skip data jump over whole blocks in {@link #advance(int)}
+ * instead of decoding them.
+ */
+public interface PostingsIterator {
+
+	int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+	/**
+	 * Number of documents in the postings.
+	 */
+	int docFreq();
+
+	/**
+	 * Current docid, -1 before the first nextDoc and NO_MORE_DOCS once exhausted.
+	 */
+	int docid();
+
+	/**
+	 * Frequency of the term in the current document.
+	 */
+	int freq() throws IOException;
+
+	/**
+	 * Move to the next document.
+	 *
+	 * @return the new docid, NO_MORE_DOCS if there is none
+	 */
+	int nextDoc() throws IOException;
+
+	/**
+	 * Move to the first document with docid >= target, stay put if the current one already is.
+	 *
+	 * @return the new docid, NO_MORE_DOCS if there is none
+	 */
+	int advance( int target ) throws IOException;
+
+}
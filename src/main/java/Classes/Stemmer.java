@@ -44,14 +44,46 @@ public class Stemmer {
 	 */
 
 	public void add(char[] w, int wLen) {
+		add(w, 0, wLen);
+	}
+
+	/**
+	 * Adds the wLen characters of w starting at off. The stemmer keeps no
+	 * reference to w.
+	 */
+
+	public void add(char[] w, int off, int wLen) {
+		ensureCapacity(wLen);
+		for (int c = 0; c < wLen; c++)
+			b[i++] = w[off + c];
+	}
+
+	/**
+	 * Adds the characters start..end-1 of s, without copying s first.
+	 */
+
+	public void add(CharSequence s, int start, int end) {
+		ensureCapacity(end - start);
+		for (int c = start; c < end; c++)
+			b[i++] = s.charAt(c);
+	}
+
+	private void ensureCapacity(int wLen) {
 		if (i + wLen >= b.length) {
 			char[] new_b = new char[i + wLen + INC];
 			for (int c = 0; c < i; c++)
 				new_b[c] = b[c];
 			b = new_b;
 		}
-		for (int c = 0; c < wLen; c++)
-			b[i++] = w[c];
+	}
+
+	/**
+	 * Forget the characters added so far and the last result, so one Stemmer
+	 * can be reused for any number of words.
+	 */
+	public void reset() {
+		i = 0;
+		i_end = 0;
 	}
 
 	/**
@@ -80,6 +112,17 @@ public class Stemmer {
 		return b;
 	}
 
+	/**
+	 * Copies the result of the last stem() into dest at off, which must have
+	 * room for getResultLength() characters.
+	 * 
+	 * @return the length of the result
+	 */
+	public int getResult(char[] dest, int off) {
+		System.arraycopy(b, 0, dest, off, i_end);
+		return i_end;
+	}
+
 	/* cons(i) is true <=> b[i] is a consonant. */
 
 	private final boolean cons(int i) {
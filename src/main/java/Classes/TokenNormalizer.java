@@ -0,0 +1,226 @@
+package Classes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.analysis.CharArraySet;
+
+/**
+ * Tokenize, lowercase, drop stop words and stem text, the pre-processing of queries.
+ *
+ * Every token goes through a memo of recent token -> term results, keyed by the lowercased chars
+ * of the token, so a repeated token is resolved without building a String or running the stemmer.
+ * A new token is looked up in the stop words by its chars and stemmed into a per-thread buffer, the
+ * only String made is the term the memo keeps; tokens too long for the memo go straight from that
+ * buffer into the output of normalizeText.
+ * The memo is a fixed array of slots addressed by the token's hash, a new token replaces whatever
+ * was in its slot; slots hold immutable entries, so lookups take no lock. Stemmers and buffers are
+ * kept per thread. A normalizer can be shared by any number of threads, and once the memo is warm a
+ * batch allocates little more than the text it returns.
+ *
+ * Documents are indexed as the corpus has them, already pre-processed, so only queries go through it.
+ */
+public class TokenNormalizer {
+
+	// Delimiters of the weka tokenizer
+	public static final String DELIMITERS = "\r\n\t.,;:\"()?! ";
+	// Longer tokens are normalized but not memoized
+	private static final int MAX_MEMO_LENGTH = 64;
+
+	private final CharArraySet stopWords;
+	private final Entry[] memo;
+	private final int mask;
+	private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param stopWords lowercase stop words
+	 * @param memoSize number of memo slots, rounded up to a power of two
+	 */
+	public TokenNormalizer( Set<String> stopWords, int memoSize ) {
+		this.stopWords = CharArraySet.unmodifiableSet(new CharArraySet(stopWords, false));
+		int slots = Integer.highestOneBit(Math.max(1, memoSize - 1)) << 1;
+		this.memo = new Entry[slots];
+		this.mask = slots - 1;
+	}
+
+	/**
+	 * A normalizer with the stop words of Path.StopwordDir, one per line.
+	 * 
+	 * @param memoSize number of memo slots
+	 * @return
+	 * @throws IOException
+	 */
+	public static TokenNormalizer withDefaultStopWords( int memoSize ) throws IOException {
+		Set<String> stopWords = new HashSet<>();
+		try (Stream<String> lines = Files.lines(Paths.get(Path.StopwordDir))) {
+			lines.forEach(s -> stopWords.add(s.trim().toLowerCase(Locale.US)));
+		}
+		return new TokenNormalizer(stopWords, memoSize);
+	}
+
+	/**
+	 * Append the terms of text to out, each followed by a space.
+	 */
+	public void normalizeText( CharSequence text, StringBuilder out ) {
+		Scratch s = scratch.get();
+		int length = text.length();
+		int start = 0;
+		while (start < length) {
+			while (start < length && isDelimiter(text.charAt(start)))
+				start++;
+			int end = start;
+			while (end < length && !isDelimiter(text.charAt(end)))
+				end++;
+			if (end > start) {
+				int tokenLength = s.lowercase(text, start, end);
+				if (tokenLength > MAX_MEMO_LENGTH) {
+					int termLength = stem(s, tokenLength);
+					if (termLength > 0)
+						out.append(s.term, 0, termLength).append(' ');
+				} else {
+					String term = memoized(s, tokenLength);
+					if (!term.isEmpty())
+						out.append(term).append(' ');
+				}
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * The terms of text, each followed by a space.
+	 */
+	public String normalizeText( CharSequence text ) {
+		StringBuilder sb = new StringBuilder();
+		normalizeText(text, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * The stemmed lowercase form of the token text[start..end), "" if it is a stop word.
+	 */
+	public String normalize( CharSequence text, int start, int end ) {
+		Scratch s = scratch.get();
+		int length = s.lowercase(text, start, end);
+		if (length > MAX_MEMO_LENGTH)
+			return new String(s.term, 0, stem(s, length));
+		return memoized(s, length);
+	}
+
+	/**
+	 * The term of the lowercased token s.chars[0..length), from the memo or stemmed and memoized.
+	 */
+	private String memoized( Scratch s, int length ) {
+		int hash = 0;
+		for (int c = 0; c < length; c++)
+			hash = 31 * hash + s.chars[c];
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		Entry entry = memo[slot];
+		if (entry != null && entry.hash == hash && entry.matches(s.chars, length)) {
+			hits.increment();
+			return entry.term;
+		}
+		misses.increment();
+		String term = new String(s.term, 0, stem(s, length));
+		memo[slot] = new Entry(hash, Arrays.copyOf(s.chars, length), term);
+		return term;
+	}
+
+	/**
+	 * Stem the lowercased token s.chars[0..length) into s.term, returns the length of the term, 0 for a
+	 * stop word.
+	 */
+	private int stem( Scratch s, int length ) {
+		if (stopWords.contains(s.chars, 0, length))
+			return 0;
+		s.stemmer.reset();
+		s.stemmer.add(s.chars, 0, length);
+		s.stemmer.stem();
+		int termLength = s.stemmer.getResultLength();
+		if (termLength > s.term.length)
+			s.term = new char[Math.max(termLength, 2 * s.term.length)];
+		return s.stemmer.getResult(s.term, 0);
+	}
+
+	private static boolean isDelimiter( char c ) {
+		return DELIMITERS.indexOf(c) >= 0;
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("slots=%d hits=%d misses=%d", memo.length, hits(), misses());
+	}
+
+	/**
+	 * A memoized token and its term
+	 */
+	private static class Entry {
+		final int hash;
+		final char[] token;
+		final String term;
+
+		Entry( int hash, char[] token, String term ) {
+			this.hash = hash;
+			this.token = token;
+			this.term = term;
+		}
+
+		boolean matches( char[] chars, int length ) {
+			if (token.length != length)
+				return false;
+			for (int c = 0; c < length; c++)
+				if (token[c] != chars[c])
+					return false;
+			return true;
+		}
+	}
+
+	/**
+	 * Working memory of one thread
+	 */
+	private static class Scratch {
+		final Stemmer stemmer = new Stemmer();
+		char[] chars = new char[64];
+		char[] term = new char[64];
+
+		/**
+		 * Lowercase text[start..end) into chars like String.toLowerCase(Locale.US), returns its length.
+		 */
+		int lowercase( CharSequence text, int start, int end ) {
+			int length = end - start;
+			if (length > chars.length)
+				chars = new char[Math.max(length, 2 * chars.length)];
+			for (int c = 0; c < length; c++) {
+				char ch = text.charAt(start + c);
+				if (ch >= 128) {
+					// Some letters lowercase to several chars or depend on their context
+					String lc = text.subSequence(start, end).toString().toLowerCase(Locale.US);
+					if (lc.length() > chars.length)
+						chars = new char[lc.length()];
+					lc.getChars(0, lc.length(), chars, 0);
+					return lc.length();
+				}
+				chars[c] = ch >= 'A' && ch <= 'Z' ? (char) (ch + 32) : ch;
+			}
+			return length;
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+package IndexingCompact;
+
+/**
+ * File names and layout constants of the compact index, shared by the writer and the reader.
+ *
+ * All numbers are big-endian. Every file starts with MAGIC and VERSION (two ints) and, from
+ * VERSION_BUILD_ID, the long id of the build that wrote it, the same random id in all three files.
+ *
+ * terms.dict: int termCount, int docCount, long totalLength, long blobLength,
+ *   long offsets[termCount + 1] into the blob, termCount entries of
+ *   (int df, long cf, long postingsOffset, int maxTf, int minDocLength), then the blob of UTF-8
+ *   terms sorted as unsigned bytes.
+ *
+ * postings.bin: for each term at its postingsOffset, int skipCount, skipCount entries of
+ *   (int lastDocid, int blockOffset) for every block after the first, then the blocks of BLOCK_SIZE
+ *   postings, each posting a variable-byte docid gap (minus one) and a variable-byte tf.
+ *   lastDocid is the last docid of the previous block, blockOffset is relative to the first block.
+ *
+ * docs.bin: int docCount, long blobLength, int lengths[docCount], long offsets[docCount + 1] into
+ *   the blob, int docids[docCount] sorted by docno, then the blob of UTF-8 docnos in docid order.
+ */
+final class CompactFormat {
+
+	static final String TERMS_FILE = "terms.dict";
+	static final String POSTINGS_FILE = "postings.bin";
+	static final String DOCS_FILE = "docs.bin";
+
+	static final int MAGIC = 0x43494458;
+	static final int VERSION_START = 0;
+	static final int VERSION_BUILD_ID = 1;
+	static final int VERSION = VERSION_BUILD_ID;
+
+	static final int BLOCK_SIZE = 128;	static final int TERM_ENTRY_BYTES = 28;
+	static final int SKIP_ENTRY_BYTES = 8;
+
+	/**
+	 * Bytes of the header of a file of the given version.
+	 */
+	static int headerBytes( int version ) {
+		return version >= VERSION_BUILD_ID ? 16 : 8;
+	}
+
+	private CompactFormat() {
+	}
+
+}
@@ -0,0 +1,191 @@
+package IndexingCompact;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import IndexingLucene.CorpusDocument;
+import IndexingLucene.MyIndexReader;
+import IndexingLucene.PreProcessedCorpusReader;
+
+/**
+ * Build the compact index of a data type, either by converting its Lucene index or straight from
+ * the pre-processed corpus. Both give the same docids as MyIndexWriter in serial mode: documents
+ * are numbered in corpus order.
+ *
+ * Usage: CompactIndexBuilder [trectext|trecweb] [lucene|corpus]
+ */
+public class CompactIndexBuilder {
+
+	// Longest token WhitespaceAnalyzer emits, longer runs are cut into several tokens
+	private static final int MAX_TOKEN_LENGTH = 255;
+
+	public static void main(String[] args) throws Exception {
+		String dataType = args.length > 0 ? args[0] : "trectext";
+		boolean fromCorpus = args.length > 1 && args[1].equals("corpus");
+		Path dir = Paths.get(dataType.equals("trectext") ? Classes.Path.CompactTextDir : Classes.Path.CompactWebDir);
+		long startTime = System.currentTimeMillis();
+		int count = fromCorpus ? fromCorpus(dataType, dir) : fromLucene(dataType, dir);
+		long endTime = System.currentTimeMillis();
+		System.out.println("totaly document count:  " + count);
+		System.out.println("compact " + dataType + " index running time: " + (endTime - startTime) / 60000.0 + " min");
+	}
+
+	/**
+	 * Convert the Lucene index of dataType, term by term in the order of its term dictionary.
+	 * Deleted documents are left out and the remaining docids closed up.
+	 *
+	 * @param dataType
+	 * @param dir where to write the compact index
+	 * @return number of documents
+	 * @throws IOException
+	 */
+	public static int fromLucene(String dataType, Path dir) throws IOException {
+		MyIndexReader ixreader = new MyIndexReader(dataType);
+		try {
+			IndexReader ireader = ixreader.getIndexReader();
+			Bits liveDocs = MultiFields.getLiveDocs(ireader);
+			int[] docMap = new int[ireader.maxDoc()];
+			int count = 0;
+			for (int docid = 0; docid < docMap.length; docid++)
+				docMap[docid] = liveDocs == null || liveDocs.get(docid) ? count++ : -1;
+			String[] docnos = new String[count];
+			int[] lengths = new int[count];
+			for (int docid = 0; docid < docMap.length; docid++) {
+				if (docMap[docid] < 0)
+					continue;
+				docnos[docMap[docid]] = ixreader.getDocno(docid);
+				lengths[docMap[docid]] = ixreader.docLength(docid);
+			}
+
+			CompactIndexWriter writer = new CompactIndexWriter(dir);
+			writer.setDocuments(docnos, lengths, count);
+			Terms terms = MultiFields.getTerms(ireader, "CONTENT");
+			if (terms != null) {
+				TermsEnum termsEnum = terms.iterator();
+				PostingsEnum postings = null;
+				BytesRef term;
+				while ((term = termsEnum.next()) != null) {
+					writer.startTerm(term.utf8ToString());
+					postings = termsEnum.postings(postings, PostingsEnum.FREQS);
+					int doc;
+					while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+						if (docMap[doc] >= 0)
+							writer.addPosting(docMap[doc], postings.freq());
+					}
+					writer.finishTerm();
+				}
+			}
+			writer.close();
+			return count;
+		} finally {
+			ixreader.close();
+		}
+	}
+
+	/**
+	 * Invert the pre-processed corpus of dataType in memory and write it, tokenized like the Lucene
+	 * index (whitespace separated, at most 255 chars per token).
+	 *
+	 * @param dataType
+	 * @param dir where to write the compact index
+	 * @return number of documents
+	 * @throws IOException
+	 */
+	public static int fromCorpus(String dataType, Path dir) throws IOException {
+		PreProcessedCorpusReader corpus = new PreProcessedCorpusReader(dataType);
+		Map<String, TermPostings> index = new HashMap<>();
+		Map<String, int[]> docTerms = new HashMap<>();
+		List<String> docnos = new ArrayList<>();
+		int[] lengths = new int[1024];
+		StringBuilder token = new StringBuilder();
+		CorpusDocument doc = new CorpusDocument();
+		while (corpus.nextDocument(doc)) {
+			int docid = docnos.size();
+			docnos.add(doc.docno().toString());
+			docTerms.clear();
+			int length = 0;
+			CharSequence content = doc.content();
+			for (int ix = 0; ix < content.length(); ) {
+				int c = Character.codePointAt(content, ix);
+				ix += Character.charCount(c);
+				if (Character.isWhitespace(c)) {
+					length += addToken(docTerms, token);
+				} else {
+					token.appendCodePoint(c);
+					if (token.length() >= MAX_TOKEN_LENGTH)
+						length += addToken(docTerms, token);
+				}
+			}
+			length += addToken(docTerms, token);
+			if (docid == lengths.length)
+				lengths = Arrays.copyOf(lengths, docid * 2);
+			lengths[docid] = length;
+			for (Map.Entry<String, int[]> entry : docTerms.entrySet())
+				index.computeIfAbsent(entry.getKey(), t -> new TermPostings()).add(docid, entry.getValue()[0]);
+		}
+		corpus.close();
+
+		byte[][] sorted = new byte[index.size()][];
+		int ix = 0;
+		for (String term : index.keySet())
+			sorted[ix++] = term.getBytes(StandardCharsets.UTF_8);
+		Arrays.sort(sorted, CompactIndexWriter::compare);
+
+		CompactIndexWriter writer = new CompactIndexWriter(dir);
+		writer.setDocuments(docnos.toArray(new String[0]), lengths, docnos.size());
+		for (byte[] bytes : sorted) {
+			String term = new String(bytes, StandardCharsets.UTF_8);
+			TermPostings postings = index.get(term);
+			writer.startTerm(term);
+			for (int p = 0; p < postings.size; p++)
+				writer.addPosting(postings.data[2 * p], postings.data[2 * p + 1]);
+			writer.finishTerm();
+		}
+		writer.close();
+		return docnos.size();
+	}
+
+	/**
+	 * Count the token in the document's term counts and clear it, returns the number of tokens added.
+	 */
+	private static int addToken(Map<String, int[]> docTerms, StringBuilder token) {
+		if (token.length() == 0)
+			return 0;
+		docTerms.computeIfAbsent(token.toString(), t -> new int[1])[0]++;
+		token.setLength(0);
+		return 1;
+	}
+
+	/**
+	 * Postings of one term as interleaved (docid, tf) pairs.
+	 */
+	private static class TermPostings {
+		int[] data = new int[4];
+		int size;
+
+		void add(int docid, int tf) {
+			if (2 * size == data.length)
+				data = Arrays.copyOf(data, data.length * 2);
+			data[2 * size] = docid;
+			data[2 * size + 1] = tf;
+			size++;
+		}
+	}
+
+}
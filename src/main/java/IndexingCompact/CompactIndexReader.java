@@ -0,0 +1,317 @@
+package IndexingCompact;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import Classes.IndexAccess;
+import Classes.PostingList;
+
+/**
+ * Read a compact index through the same IndexAccess methods as IndexingLucene.MyIndexReader.
+ *
+ * The term dictionary, the postings and the document table are memory-mapped read-only and read in
+ * place: a term is found by binary search over the sorted dictionary, postings are decoded on demand,
+ * lengths and docnos are read from the document table. Nothing is loaded on the heap, so opening is
+ * cheap and a reader can be shared by any number of threads.
+ *
+ * close() unmaps the files at once, so they can be deleted or rebuilt while the JVM runs (Windows
+ * refuses both while a mapping is alive). It must only be called once no thread uses the reader or a
+ * cursor it opened: reading an unmapped file can crash the JVM.
+ */
+public class CompactIndexReader implements IndexAccess {
+
+	private final MappedFile terms;
+	private final MappedFile postings;
+	private final MappedFile docs;
+	private final int termCount;
+	private final int docCount;
+	private final long totalLength;
+	// Positions of the sections of terms.dict and docs.bin
+	private final long termOffsets;
+	private final long termEntries;
+	private final long termBlob;
+	private final long docLengths;
+	private final long docnoOffsets;
+	private final long docnoSorted;
+	private final long docnoBlob;
+	private final long version;
+
+	public CompactIndexReader( String dataType ) throws IOException {
+		this(Paths.get(dataType.equals("trectext") ? Classes.Path.CompactTextDir : Classes.Path.CompactWebDir));
+	}
+
+	public CompactIndexReader( Path dir ) throws IOException {
+		terms = new MappedFile(dir.resolve(CompactFormat.TERMS_FILE));
+		postings = new MappedFile(dir.resolve(CompactFormat.POSTINGS_FILE));
+		docs = new MappedFile(dir.resolve(CompactFormat.DOCS_FILE));
+		int format = checkHeader(terms, CompactFormat.TERMS_FILE);
+		if (checkHeader(postings, CompactFormat.POSTINGS_FILE) != format || checkHeader(docs, CompactFormat.DOCS_FILE) != format)
+			throw new IOException("Compact index in " + dir + " mixes files of different versions");
+		int headerBytes = CompactFormat.headerBytes(format);
+		if (format >= CompactFormat.VERSION_BUILD_ID) {
+			version = terms.getLong(8);
+			if (postings.getLong(8) != version || docs.getLong(8) != version)
+				throw new IOException("Compact index in " + dir + " mixes files of different builds");
+		} else {
+			// No build id before VERSION_BUILD_ID, the files are written once and a rebuilt index has a newer dictionary
+			version = Files.getLastModifiedTime(dir.resolve(CompactFormat.TERMS_FILE)).toMillis();
+		}
+
+		long pos = headerBytes;
+		termCount = terms.getInt(pos);
+		int termDocCount = terms.getInt(pos + 4);
+		totalLength = terms.getLong(pos + 8);
+		termOffsets = pos + 24;
+		termEntries = termOffsets + 8L * (termCount + 1);
+		termBlob = termEntries + (long) CompactFormat.TERM_ENTRY_BYTES * termCount;
+
+		pos = headerBytes;
+		docCount = docs.getInt(pos);
+		docLengths = pos + 12;
+		docnoOffsets = docLengths + 4L * docCount;
+		docnoSorted = docnoOffsets + 8L * (docCount + 1);
+		docnoBlob = docnoSorted + 4L * docCount;
+		if (termDocCount != docCount)
+			throw new IOException("Corrupt compact index in " + dir + ": " + termDocCount + " documents in the dictionary, " + docCount + " in the document table");
+	}
+
+	/**
+	 * The format version of file.
+	 */
+	private static int checkHeader( MappedFile file, String name ) throws IOException {
+		if (file.length() < CompactFormat.headerBytes(CompactFormat.VERSION_START) || file.getInt(0) != CompactFormat.MAGIC)
+			throw new IOException(name + " is not a compact index file");
+		int version = file.getInt(4);
+		if (version < CompactFormat.VERSION_START || version > CompactFormat.VERSION
+				|| file.length() < CompactFormat.headerBytes(version))
+			throw new IOException(name + " has unsupported version " + version);
+		return version;
+	}
+
+	/**
+	 * The random id of the build that wrote the index, the modification time of the term dictionary in
+	 * ms for an index written before build ids.
+	 */
+	public long getIndexVersion() {
+		return version;
+	}
+
+	public long getTotalContentLength() {
+		return totalLength;
+	}
+
+	/**
+	 * One more than the largest docid in the index.
+	 */
+	public int maxDoc() {
+		return docCount;
+	}
+
+	/**
+	 * Number of distinct terms in the index.
+	 */
+	public int termCount() {
+		return termCount;
+	}
+
+	/**
+	 * Get the (non-negative) integer docid for the requested docno, by binary search over the docno table.
+	 *
+	 * @param docno
+	 * @return -1 if the docno does not exist in the index
+	 */
+	public int getDocid( String docno ) {
+		byte[] key = docno.getBytes(StandardCharsets.UTF_8);
+		int low = 0, high = docCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int docid = docs.getInt(docnoSorted + 4L * mid);
+			long start = docs.getLong(docnoOffsets + 8L * docid);
+			int length = (int) (docs.getLong(docnoOffsets + 8L * (docid + 1)) - start);
+			int cmp = docs.compare(docnoBlob + start, length, key);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return docid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Retrive the docno for the integer docid.
+	 *
+	 * @param docid
+	 * @return null if the docid is out of range
+	 */
+	public String getDocno( int docid ) {
+		if (docid < 0 || docid >= docCount)
+			return null;
+		long start = docs.getLong(docnoOffsets + 8L * docid);
+		byte[] bytes = new byte[(int) (docs.getLong(docnoOffsets + 8L * (docid + 1)) - start)];
+		docs.getBytes(docnoBlob + start, bytes, bytes.length);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public String[] getDocnos( int[] docids ) {
+		String[] result = new String[docids.length];
+		for (int ix = 0; ix < docids.length; ix++)
+			result[ix] = getDocno(docids[ix]);
+		return result;
+	}
+
+	public int[] getDocids( String[] docnos ) {
+		int[] result = new int[docnos.length];
+		for (int ix = 0; ix < docnos.length; ix++)
+			result[ix] = getDocid(docnos[ix]);
+		return result;
+	}
+
+	/**
+	 * Ordinal of the token in the term dictionary.
+	 *
+	 * @param token
+	 * @return -1 if the token is not in the index
+	 */
+	public int findTerm( String token ) {
+		byte[] key = token.getBytes(StandardCharsets.UTF_8);
+		int low = 0, high = termCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long start = terms.getLong(termOffsets + 8L * mid);
+			int length = (int) (terms.getLong(termOffsets + 8L * (mid + 1)) - start);
+			int cmp = terms.compare(termBlob + start, length, key);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * The term at ord, terms are numbered in ascending UTF-8 byte order.
+	 *
+	 * @param ord
+	 * @return
+	 */
+	public String term( int ord ) {
+		long start = terms.getLong(termOffsets + 8L * ord);
+		byte[] bytes = new byte[(int) (terms.getLong(termOffsets + 8L * (ord + 1)) - start)];
+		terms.getBytes(termBlob + start, bytes, bytes.length);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private long entry( int ord ) {
+		return termEntries + (long) CompactFormat.TERM_ENTRY_BYTES * ord;
+	}
+
+	/**
+	 * Return the number of documents that contains the token.
+	 */
+	public int DocFreq( String token ) {
+		int ord = findTerm(token);
+		return ord < 0 ? 0 : terms.getInt(entry(ord));
+	}
+
+	/**
+	 * Return the total number of times the token appears in the collection.
+	 */
+	public long CollectionFreq( String token ) {
+		int ord = findTerm(token);
+		return ord < 0 ? 0 : terms.getLong(entry(ord) + 4);
+	}
+
+	/**
+	 * Return the largest frequency of the token in any one document, 0 if the token is not in the index.
+	 */
+	public int maxTermFreq( String token ) {
+		int ord = findTerm(token);
+		return ord < 0 ? 0 : terms.getInt(entry(ord) + 20);
+	}
+
+	/**
+	 * Return the length of the shortest document that contains the token, 0 if the token is not in the index.
+	 */
+	public int minDocLength( String token ) {
+		int ord = findTerm(token);
+		return ord < 0 ? 0 : terms.getInt(entry(ord) + 24);
+	}
+
+	/**
+	 * A cursor over the postings of the token.
+	 *
+	 * @param token
+	 * @return null if the token is not in the index
+	 */
+	public PostingsCursor openPostings( String token ) {
+		int ord = findTerm(token);
+		if (ord < 0)
+			return null;
+		long entry = entry(ord);
+		return new PostingsCursor(postings, terms.getLong(entry + 12), terms.getInt(entry));
+	}
+
+	/**
+	 * Get the posting list for the requested token as parallel docid/freq arrays,
+	 * ranked by docid from the smallest to the largest.
+	 *
+	 * @param token
+	 * @return null if the token is not in the index
+	 */
+	public PostingList getPostings( String token ) {
+		PostingsCursor cursor = openPostings(token);
+		if (cursor == null)
+			return null;
+		int[] docids = new int[cursor.docFreq()];
+		int[] freqs = new int[cursor.docFreq()];
+		for (int ix = 0; cursor.nextDoc() != PostingsCursor.NO_MORE_DOCS; ix++) {
+			docids[ix] = cursor.docid();
+			freqs[ix] = cursor.freq();
+		}
+		return new PostingList(docids, freqs, docids.length);
+	}
+
+	/**
+	 * Same layout as MyIndexReader.getPostingList: array[i][0] is a docid, array[i][1] the
+	 * frequency of the token in it, ranked by docid.
+	 */
+	public int[][] getPostingList( String token ) {
+		PostingList postings = getPostings(token);
+		return (postings==null)?null:postings.toArray();
+	}
+
+	/**
+	 * Return the length of the requested document.
+	 */
+	public int docLength( int docid ) {
+		return docs.getInt(docLengths + 4L * docid);
+	}
+
+	/**
+	 * Lengths of the first count documents of docids at once, lengths[i] is the length of docids[i].
+	 */
+	public void docLength( int[] docids, int[] lengths, int count ) {
+		for (int ix = 0; ix < count; ix++)
+			lengths[ix] = docLength(docids[ix]);
+	}
+
+	/**
+	 * Unmap the files, see the class comment.
+	 */
+	public void close() throws IOException {
+		try {
+			terms.close();
+			postings.close();
+		} finally {
+			docs.close();
+		}
+	}
+
+}
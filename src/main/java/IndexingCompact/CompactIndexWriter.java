@@ -0,0 +1,249 @@
+package IndexingCompact;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Write a compact index, see {@link CompactFormat} for the layout.
+ *
+ * The documents are given first, then the terms one by one in ascending UTF-8 byte order, each with
+ * its postings in ascending docid order:
+ *
+ * <pre>
+ * writer.setDocuments(docnos, lengths, count);
+ * writer.startTerm(term); writer.addPosting(docid, tf); ... writer.finishTerm();
+ * writer.close();
+ * </pre>
+ *
+ * Postings go straight to postings.bin, only the postings of the current term and the dictionary
+ * entries are kept in memory.
+ */
+public class CompactIndexWriter {
+
+	private final Path dir;
+	// Written into every file, so a reader can tell the files of one build and a rebuilt index apart
+	private final long buildId = ThreadLocalRandom.current().nextLong();
+	private final DataOutputStream postings;
+	private long postingsPointer;
+	private String[] docnos;
+	private int[] lengths;
+	private int docCount = -1;
+	private final List<TermEntry> terms = new ArrayList<>();
+	private long totalLength;
+	// Postings of the term being written
+	private TermEntry current;
+	private int[] docids = new int[1024];
+	private int[] freqs = new int[1024];
+	private int size;
+	private byte[] block = new byte[4096];
+
+	/**
+	 * Create (or overwrite) the compact index in dir.
+	 *
+	 * @param dir
+	 * @throws IOException
+	 */
+	public CompactIndexWriter( Path dir ) throws IOException {
+		this.dir = dir;
+		Files.createDirectories(dir);
+		postings = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve(CompactFormat.POSTINGS_FILE)), 1 << 16));
+		writeHeader(postings);
+		postingsPointer = CompactFormat.headerBytes(CompactFormat.VERSION);
+	}
+
+	/**
+	 * The docno and length of every document, indexed by docid.
+	 *
+	 * @param docnos
+	 * @param lengths number of tokens of each document
+	 * @param count number of documents
+	 */
+	public void setDocuments( String[] docnos, int[] lengths, int count ) {
+		this.docnos = docnos;
+		this.lengths = lengths;
+		this.docCount = count;
+	}
+
+	public void startTerm( String term ) {
+		if (docCount < 0)
+			throw new IllegalStateException("setDocuments must be called before the first term");
+		byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+		if (!terms.isEmpty() && compare(terms.get(terms.size() - 1).term, bytes) >= 0)
+			throw new IllegalArgumentException("Terms must be added in ascending byte order: " + term);
+		current = new TermEntry(bytes);
+		size = 0;
+	}
+
+	public void addPosting( int docid, int tf ) {
+		if (docid < 0 || docid >= docCount || (size > 0 && docid <= docids[size - 1]))
+			throw new IllegalArgumentException("Postings must be added in ascending docid order: " + docid);
+		if (size == docids.length) {
+			docids = Arrays.copyOf(docids, size * 2);
+			freqs = Arrays.copyOf(freqs, size * 2);
+		}
+		docids[size] = docid;
+		freqs[size] = tf;
+		size++;
+		current.cf += tf;
+		current.maxTf = Math.max(current.maxTf, tf);
+		current.minDocLength = Math.min(current.minDocLength, lengths[docid]);
+	}
+
+	/**
+	 * Write the postings of the current term, a term without postings is left out.
+	 */
+	public void finishTerm() throws IOException {
+		if (size == 0) {
+			current = null;
+			return;
+		}
+		current.df = size;
+		current.postingsOffset = postingsPointer;
+		int blocks = (size + CompactFormat.BLOCK_SIZE - 1) / CompactFormat.BLOCK_SIZE;
+		int[] blockOffsets = new int[blocks];
+		int length = 0;
+		int prev = -1;
+		for (int ix = 0; ix < size; ix++) {
+			if (ix % CompactFormat.BLOCK_SIZE == 0)
+				blockOffsets[ix / CompactFormat.BLOCK_SIZE] = length;
+			if (block.length - length < 10)
+				block = Arrays.copyOf(block, block.length * 2);
+			length = writeVInt(block, length, docids[ix] - prev - 1);
+			length = writeVInt(block, length, freqs[ix]);
+			prev = docids[ix];
+		}
+		postings.writeInt(blocks - 1);
+		for (int b = 1; b < blocks; b++) {
+			postings.writeInt(docids[b * CompactFormat.BLOCK_SIZE - 1]);
+			postings.writeInt(blockOffsets[b]);
+		}
+		postings.write(block, 0, length);
+		postingsPointer += 4 + (long) CompactFormat.SKIP_ENTRY_BYTES * (blocks - 1) + length;
+		totalLength += current.cf;
+		terms.add(current);
+		current = null;
+	}
+
+	/**
+	 * Finish postings.bin and write the term dictionary and the document table.
+	 */
+	public void close() throws IOException {
+		if (current != null)
+			finishTerm();
+		postings.close();
+		writeTerms();
+		writeDocs();
+	}
+
+	private void writeHeader( DataOutputStream out ) throws IOException {
+		out.writeInt(CompactFormat.MAGIC);
+		out.writeInt(CompactFormat.VERSION);
+		out.writeLong(buildId);
+	}
+
+	private void writeTerms() throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve(CompactFormat.TERMS_FILE)), 1 << 16))) {
+			writeHeader(out);
+			out.writeInt(terms.size());
+			out.writeInt(docCount);
+			out.writeLong(totalLength);
+			long offset = 0;
+			for (TermEntry entry : terms)
+				offset += entry.term.length;
+			out.writeLong(offset);
+			offset = 0;
+			out.writeLong(offset);
+			for (TermEntry entry : terms) {
+				offset += entry.term.length;
+				out.writeLong(offset);
+			}
+			for (TermEntry entry : terms) {
+				out.writeInt(entry.df);
+				out.writeLong(entry.cf);
+				out.writeLong(entry.postingsOffset);
+				out.writeInt(entry.maxTf);
+				out.writeInt(entry.minDocLength);
+			}
+			for (TermEntry entry : terms)
+				out.write(entry.term);
+		}
+	}
+
+	private void writeDocs() throws IOException {
+		final byte[][] bytes = new byte[docCount][];
+		long blobLength = 0;
+		for (int docid = 0; docid < docCount; docid++) {
+			bytes[docid] = (docnos[docid] == null ? "" : docnos[docid]).getBytes(StandardCharsets.UTF_8);
+			blobLength += bytes[docid].length;
+		}
+		Integer[] order = new Integer[docCount];
+		for (int ix = 0; ix < docCount; ix++)
+			order[ix] = ix;
+		Arrays.sort(order, (d1, d2) -> compare(bytes[d1], bytes[d2]));
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve(CompactFormat.DOCS_FILE)), 1 << 16))) {
+			writeHeader(out);
+			out.writeInt(docCount);
+			out.writeLong(blobLength);
+			for (int docid = 0; docid < docCount; docid++)
+				out.writeInt(lengths[docid]);
+			long offset = 0;
+			out.writeLong(offset);
+			for (int docid = 0; docid < docCount; docid++) {
+				offset += bytes[docid].length;
+				out.writeLong(offset);
+			}
+			for (int docid : order)
+				out.writeInt(docid);
+			for (int docid = 0; docid < docCount; docid++)
+				out.write(bytes[docid]);
+		}
+	}
+
+	/**
+	 * Seven bits per byte, lowest first, the high bit set on every byte but the last.
+	 */
+	private static int writeVInt( byte[] dest, int pos, int value ) {
+		while ((value & ~0x7F) != 0) {
+			dest[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dest[pos++] = (byte) value;
+		return pos;
+	}
+
+	/**
+	 * Compare as unsigned bytes, the order of the term dictionary and the docno table.
+	 */
+	static int compare( byte[] a, byte[] b ) {
+		int common = Math.min(a.length, b.length);
+		for (int ix = 0; ix < common; ix++) {
+			int cmp = (a[ix] & 0xFF) - (b[ix] & 0xFF);
+			if (cmp != 0)
+				return cmp;
+		}
+		return a.length - b.length;
+	}
+
+	private static class TermEntry {
+		final byte[] term;
+		int df;
+		long cf;
+		long postingsOffset;
+		int maxTf;
+		int minDocLength = Integer.MAX_VALUE;
+
+		TermEntry( byte[] term ) {
+			this.term = term;
+		}
+	}
+
+}
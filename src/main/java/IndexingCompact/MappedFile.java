@@ -0,0 +1,128 @@
+package IndexingCompact;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A whole file mapped read-only, addressed by long positions.
+ *
+ * The file is mapped in 1 GB chunks so it may be bigger than one MappedByteBuffer; the few values
+ * that straddle two chunks are read byte by byte. Reads are absolute, so one MappedFile can be
+ * shared by any number of threads. The channel is closed once mapped, the mapping itself is
+ * released by close(), through the JDK's buffer cleaner like Lucene's MMapDirectory does, or by the
+ * garbage collector on a JVM that does not give access to the cleaner.
+ */
+class MappedFile {
+
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	// Null if the buffers cannot be unmapped explicitly
+	private static final Unmapper UNMAPPER = unmapper();
+
+	private interface Unmapper {
+		void unmap( ByteBuffer buffer ) throws ReflectiveOperationException;
+	}
+
+	private final ByteBuffer[] chunks;
+	private final long length;
+
+	MappedFile( Path file ) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			length = channel.size();
+			int count = (int) ((length + CHUNK_MASK) >>> CHUNK_BITS);
+			chunks = new ByteBuffer[count];
+			for (int ix = 0; ix < count; ix++) {
+				long start = (long) ix << CHUNK_BITS;
+				chunks[ix] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << CHUNK_BITS, length - start));
+			}
+		}
+	}
+
+	private static Unmapper unmapper() {
+		try {
+			// Java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			return buffer -> invokeCleaner.invoke(unsafe, buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Java 8
+		}
+		try {
+			Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			return buffer -> clean.invoke(cleaner.invoke(buffer));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Unmap the file. Later reads fail, but a read racing with close can crash the JVM, so the owner
+	 * closes it only once no thread reads it any more.
+	 */
+	void close() throws IOException {
+		for (int ix = 0; ix < chunks.length; ix++) {
+			ByteBuffer chunk = chunks[ix];
+			if (chunk == null)
+				continue;
+			chunks[ix] = null;
+			if (UNMAPPER != null) {
+				try {
+					UNMAPPER.unmap(chunk);
+				} catch (ReflectiveOperationException e) {
+					throw new IOException("Cannot unmap a chunk of a compact index file", e);
+				}
+			}
+		}
+	}
+
+	long length() {
+		return length;
+	}
+
+	byte getByte( long pos ) {
+		return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+	}
+
+	int getInt( long pos ) {
+		int offset = (int) (pos & CHUNK_MASK);
+		if (offset <= CHUNK_MASK - 3)
+			return chunks[(int) (pos >>> CHUNK_BITS)].getInt(offset);
+		return ((getByte(pos) & 0xFF) << 24) | ((getByte(pos + 1) & 0xFF) << 16)
+				| ((getByte(pos + 2) & 0xFF) << 8) | (getByte(pos + 3) & 0xFF);
+	}
+
+	long getLong( long pos ) {
+		int offset = (int) (pos & CHUNK_MASK);
+		if (offset <= CHUNK_MASK - 7)
+			return chunks[(int) (pos >>> CHUNK_BITS)].getLong(offset);
+		return ((long) getInt(pos) << 32) | (getInt(pos + 4) & 0xFFFFFFFFL);
+	}
+
+	void getBytes( long pos, byte[] dest, int length ) {
+		for (int ix = 0; ix < length; ix++)
+			dest[ix] = getByte(pos + ix);
+	}
+
+	/**
+	 * Compare length bytes at pos with the key, as unsigned bytes.
+	 */
+	int compare( long pos, int length, byte[] key ) {
+		int common = Math.min(length, key.length);
+		for (int ix = 0; ix < common; ix++) {
+			int cmp = (getByte(pos + ix) & 0xFF) - (key[ix] & 0xFF);
+			if (cmp != 0)
+				return cmp;
+		}
+		return length - key.length;
+	}
+
+}
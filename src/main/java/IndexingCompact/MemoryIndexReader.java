@@ -0,0 +1,330 @@
+package IndexingCompact;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+
+import Classes.IndexAccess;
+import Classes.PostingList;
+import Classes.PostingsIterator;
+import IndexingLucene.MyIndexReader;
+
+/**
+ * A whole index loaded into primitive arrays, for deployments where query latency matters more
+ * than startup time and the index fits in the heap.
+ *
+ * Terms and docnos are each kept in one char blob addressed by int offsets, the terms sorted for
+ * binary search and the docnos in docid order with a docno-sorted docid array next to them. The
+ * postings of all terms are ranges of two shared int arrays, so {@link #getPostings(String)}
+ * returns a view without copying. Nothing is read from disk after loading, the reader is immutable
+ * and can be shared by any number of threads.
+ */
+public class MemoryIndexReader implements IndexAccess {
+
+	private final long version;
+	private final long totalLength;
+	private final int docCount;
+	// Terms
+	private final char[] termChars;
+	private final int[] termOffsets;
+	private final long[] collectionFreqs;
+	private final int[] maxTermFreqs;
+	private final int[] minDocLengths;
+	// Postings of term ord are docids/freqs[postingStarts[ord] .. postingStarts[ord + 1])
+	private final int[] postingStarts;
+	private final int[] docids;
+	private final int[] freqs;
+	// Documents
+	private final int[] docLengths;
+	private final char[] docnoChars;
+	private final int[] docnoOffsets;
+	private final int[] docnoSorted;
+
+	/**
+	 * Load every term of a compact index.
+	 *
+	 * @param source
+	 * @return
+	 * @throws IOException
+	 */
+	public static MemoryIndexReader load( CompactIndexReader source ) throws IOException {
+		List<String> terms = new ArrayList<>(source.termCount());
+		for (int ord = 0; ord < source.termCount(); ord++)
+			terms.add(source.term(ord));
+		return new MemoryIndexReader(source, terms);
+	}
+
+	/**
+	 * Load every term of the CONTENT field of a Lucene index.
+	 *
+	 * @param source
+	 * @return
+	 * @throws IOException
+	 */
+	public static MemoryIndexReader load( MyIndexReader source ) throws IOException {
+		List<String> terms = new ArrayList<>();
+		Terms luceneTerms = MultiFields.getTerms(source.getIndexReader(), "CONTENT");
+		if (luceneTerms != null) {
+			TermsEnum termsEnum = luceneTerms.iterator();
+			BytesRef term;
+			while ((term = termsEnum.next()) != null)
+				terms.add(term.utf8ToString());
+		}
+		return new MemoryIndexReader(source, terms);
+	}
+
+	/**
+	 * Copy the given terms, their postings and every document of source into memory.
+	 *
+	 * @param source
+	 * @param terms the vocabulary of source, in any order
+	 * @throws IOException
+	 */
+	public MemoryIndexReader( IndexAccess source, List<String> terms ) throws IOException {
+		String[] sortedTerms = terms.toArray(new String[0]);
+		Arrays.sort(sortedTerms);
+		int termCount = sortedTerms.length;
+		version = source.getIndexVersion();
+		totalLength = source.getTotalContentLength();
+		docCount = source.maxDoc();
+
+		termOffsets = new int[termCount + 1];
+		termChars = concat(sortedTerms, termOffsets);
+		collectionFreqs = new long[termCount];
+		maxTermFreqs = new int[termCount];
+		minDocLengths = new int[termCount];
+		postingStarts = new int[termCount + 1];
+		long capacity = 0;
+		for (String term : sortedTerms)
+			capacity += source.DocFreq(term);
+		if (capacity > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Too many postings to load into memory: " + capacity);
+		int[] allDocids = new int[(int) capacity];
+		int[] allFreqs = new int[(int) capacity];
+		int size = 0;
+		for (int ord = 0; ord < termCount; ord++) {
+			postingStarts[ord] = size;
+			PostingList postings = source.getPostings(sortedTerms[ord]);
+			for (int ix = 0; postings != null && ix < postings.size(); ix++) {
+				allDocids[size] = postings.docid(ix);
+				allFreqs[size] = postings.freq(ix);
+				size++;
+			}
+			collectionFreqs[ord] = source.CollectionFreq(sortedTerms[ord]);
+			maxTermFreqs[ord] = source.maxTermFreq(sortedTerms[ord]);
+			minDocLengths[ord] = source.minDocLength(sortedTerms[ord]);
+		}
+		postingStarts[termCount] = size;
+		// Document frequencies may count deleted documents that have no posting
+		docids = size == allDocids.length ? allDocids : Arrays.copyOf(allDocids, size);
+		freqs = size == allFreqs.length ? allFreqs : Arrays.copyOf(allFreqs, size);
+
+		int[] all = new int[docCount];
+		for (int docid = 0; docid < docCount; docid++)
+			all[docid] = docid;
+		docLengths = new int[docCount];
+		source.docLength(all, docLengths, all.length);
+		final String[] docnos = source.getDocnos(all);
+		for (int docid = 0; docid < docCount; docid++)
+			if (docnos[docid] == null)
+				docnos[docid] = "";
+		docnoOffsets = new int[docCount + 1];
+		docnoChars = concat(docnos, docnoOffsets);
+		Integer[] order = new Integer[docCount];
+		for (int docid = 0; docid < docCount; docid++)
+			order[docid] = docid;
+		Arrays.sort(order, (d1, d2) -> docnos[d1].compareTo(docnos[d2]));
+		docnoSorted = new int[docCount];
+		for (int ix = 0; ix < docCount; ix++)
+			docnoSorted[ix] = order[ix];
+	}
+
+	/**
+	 * All the strings in one char array, string ix is chars[offsets[ix] .. offsets[ix + 1]).
+	 */
+	private static char[] concat( String[] strings, int[] offsets ) {
+		long length = 0;
+		for (String s : strings)
+			length += s.length();
+		if (length > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Too many chars to load into memory: " + length);
+		char[] chars = new char[(int) length];
+		int pos = 0;
+		for (int ix = 0; ix < strings.length; ix++) {
+			offsets[ix] = pos;
+			strings[ix].getChars(0, strings[ix].length(), chars, pos);
+			pos += strings[ix].length();
+		}
+		offsets[strings.length] = pos;
+		return chars;
+	}
+
+	/**
+	 * Compare chars[offsets[ix] .. offsets[ix + 1]) with key, in String.compareTo order.
+	 */
+	private static int compare( char[] chars, int[] offsets, int ix, String key ) {
+		int start = offsets[ix];
+		int length = offsets[ix + 1] - start;
+		int common = Math.min(length, key.length());
+		for (int i = 0; i < common; i++) {
+			int cmp = chars[start + i] - key.charAt(i);
+			if (cmp != 0)
+				return cmp;
+		}
+		return length - key.length();
+	}
+
+	/**
+	 * Ordinal of the token, -1 if the token is not in the index.
+	 */
+	private int findTerm( String token ) {
+		int low = 0, high = termOffsets.length - 2;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(termChars, termOffsets, mid, token);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Version of the index the arrays were loaded from.
+	 */
+	@Override
+	public long getIndexVersion() {
+		return version;
+	}
+
+	@Override
+	public long getTotalContentLength() {
+		return totalLength;
+	}
+
+	@Override
+	public int maxDoc() {
+		return docCount;
+	}
+
+	@Override
+	public int getDocid( String docno ) {
+		int low = 0, high = docCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(docnoChars, docnoOffsets, docnoSorted[mid], docno);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return docnoSorted[mid];
+		}
+		return -1;
+	}
+
+	@Override
+	public String getDocno( int docid ) {
+		if (docid < 0 || docid >= docCount)
+			return null;
+		return new String(docnoChars, docnoOffsets[docid], docnoOffsets[docid + 1] - docnoOffsets[docid]);
+	}
+
+	@Override
+	public String[] getDocnos( int[] docids ) {
+		String[] result = new String[docids.length];
+		for (int ix = 0; ix < docids.length; ix++)
+			result[ix] = getDocno(docids[ix]);
+		return result;
+	}
+
+	@Override
+	public int[] getDocids( String[] docnos ) {
+		int[] result = new int[docnos.length];
+		for (int ix = 0; ix < docnos.length; ix++)
+			result[ix] = getDocid(docnos[ix]);
+		return result;
+	}
+
+	@Override
+	public int[][] getPostingList( String token ) {
+		PostingList postings = getPostings(token);
+		return (postings==null)?null:postings.toArray();
+	}
+
+	@Override
+	public PostingList getPostings( String token ) {
+		int ord = findTerm(token);
+		if (ord < 0)
+			return null;
+		return new PostingList(docids, freqs, postingStarts[ord], postingStarts[ord + 1] - postingStarts[ord]);
+	}
+
+	@Override
+	public PostingsIterator openPostings( String token ) {
+		PostingList postings = getPostings(token);
+		return (postings==null)?null:postings.iterator();
+	}
+
+	@Override
+	public int DocFreq( String token ) {
+		int ord = findTerm(token);
+		return ord < 0 ? 0 : postingStarts[ord + 1] - postingStarts[ord];
+	}
+
+	@Override
+	public long CollectionFreq( String token ) {
+		int ord = findTerm(token);
+		return ord < 0 ? 0 : collectionFreqs[ord];
+	}
+
+	@Override
+	public int maxTermFreq( String token ) {
+		int ord = findTerm(token);
+		return ord < 0 ? 0 : maxTermFreqs[ord];
+	}
+
+	@Override
+	public int minDocLength( String token ) {
+		int ord = findTerm(token);
+		return ord < 0 ? 0 : minDocLengths[ord];
+	}
+
+	@Override
+	public int docLength( int docid ) {
+		return docLengths[docid];
+	}
+
+	@Override
+	public void docLength( int[] docids, int[] lengths, int count ) {
+		for (int ix = 0; ix < count; ix++)
+			lengths[ix] = docLengths[docids[ix]];
+	}
+
+	/**
+	 * Rough heap used by the loaded index, in bytes.
+	 */
+	public long ramBytesUsed() {
+		return 2L * termChars.length + 4L * termOffsets.length + 8L * collectionFreqs.length
+				+ 4L * (maxTermFreqs.length + minDocLengths.length + postingStarts.length)
+				+ 4L * (docids.length + freqs.length)
+				+ 4L * (docLengths.length + docnoOffsets.length + docnoSorted.length) + 2L * docnoChars.length;
+	}
+
+	/**
+	 * Nothing to release, the arrays go with the reader.
+	 */
+	@Override
+	public void close() {
+	}
+
+}
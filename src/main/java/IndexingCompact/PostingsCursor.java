@@ -0,0 +1,107 @@
+package IndexingCompact;
+
+import Classes.PostingsIterator;
+
+/**
+ * Decode the postings of one term straight from the mapped postings file.
+ *
+ * Postings are read in docid order with {@link #nextDoc()}; {@link #advance(int)} uses the skip
+ * entries to jump over whole blocks instead of decoding them.
+ */
+public class PostingsCursor implements PostingsIterator {
+
+	private final MappedFile file;
+	private final int df;
+	private final int skipCount;
+	private final long skipStart;
+	private final long dataStart;
+	private long pos;
+	// Number of postings decoded so far
+	private int read;
+	private int docid = -1;
+	private int freq;
+
+	PostingsCursor( MappedFile file, long offset, int df ) {
+		this.file = file;
+		this.df = df;
+		this.skipCount = file.getInt(offset);
+		this.skipStart = offset + 4;
+		this.dataStart = skipStart + (long) CompactFormat.SKIP_ENTRY_BYTES * skipCount;
+		this.pos = dataStart;
+	}
+
+	/**
+	 * Number of documents in the postings.
+	 */
+	@Override
+	public int docFreq() {
+		return df;
+	}
+
+	/**
+	 * Current docid, -1 before the first nextDoc and NO_MORE_DOCS once exhausted.
+	 */
+	@Override
+	public int docid() {
+		return docid;
+	}
+
+	/**
+	 * Frequency of the term in the current document.
+	 */
+	@Override
+	public int freq() {
+		return freq;
+	}
+
+	@Override
+	public int nextDoc() {
+		if (read == df)
+			return docid = NO_MORE_DOCS;
+		docid += readVInt() + 1;
+		freq = readVInt();
+		read++;
+		return docid;
+	}
+
+	/**
+	 * Move to the first document with docid >= target.
+	 *
+	 * @return the new docid, NO_MORE_DOCS if there is none
+	 */
+	@Override
+	public int advance( int target ) {
+		if (docid >= target)
+			return docid;
+		// Last block whose previous block ends before target, starting after the current block
+		int currentBlock = read == 0 ? 0 : (read - 1) / CompactFormat.BLOCK_SIZE;
+		int low = currentBlock, high = skipCount;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (file.getInt(skipStart + (long) CompactFormat.SKIP_ENTRY_BYTES * (mid - 1)) < target)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		if (low > currentBlock) {
+			long entry = skipStart + (long) CompactFormat.SKIP_ENTRY_BYTES * (low - 1);
+			docid = file.getInt(entry);
+			pos = dataStart + file.getInt(entry + 4);
+			read = low * CompactFormat.BLOCK_SIZE;
+		}
+		while (docid < target)
+			nextDoc();
+		return docid;
+	}
+
+	private int readVInt() {
+		byte b = file.getByte(pos++);
+		int value = b & 0x7F;
+		for (int shift = 7; b < 0; shift += 7) {
+			b = file.getByte(pos++);
+			value |= (b & 0x7F) << shift;
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,72 @@
+package IndexingLucene;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Variable length UTF-8 strings addressed by ordinal, as stored in the dictionary files:
+ * long offsets[count + 1] into one blob of bytes.
+ */
+class ByteStringTable {
+
+	private final RandomAccessInput offsets;
+	private final RandomAccessInput blob;
+
+	ByteStringTable( RandomAccessInput offsets, RandomAccessInput blob ) {
+		this.offsets = offsets;
+		this.blob = blob;
+	}
+
+	/**
+	 * Write the offsets of the values, the blob itself is written by writeBlob.
+	 */
+	static void writeOffsets( IndexOutput output, BytesRef[] values, int count ) throws IOException {
+		long offset = 0;
+		output.writeLong(offset);
+		for (int ix = 0; ix < count; ix++) {
+			offset += values[ix].length;
+			output.writeLong(offset);
+		}
+	}
+
+	static void writeBlob( IndexOutput output, BytesRef[] values, int count ) throws IOException {
+		for (int ix = 0; ix < count; ix++)
+			output.writeBytes(values[ix].bytes, values[ix].offset, values[ix].length);
+	}
+
+	static long blobLength( BytesRef[] values, int count ) {
+		long length = 0;
+		for (int ix = 0; ix < count; ix++)
+			length += values[ix].length;
+		return length;
+	}
+
+	String get( int ord ) throws IOException {
+		long start = offsets.readLong(8L * ord);
+		int length = (int) (offsets.readLong(8L * (ord + 1)) - start);
+		byte[] bytes = new byte[length];
+		for (int ix = 0; ix < length; ix++)
+			bytes[ix] = blob.readByte(start + ix);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Compare the string at ord with the key, as unsigned bytes.
+	 */
+	int compare( int ord, byte[] key ) throws IOException {
+		long start = offsets.readLong(8L * ord);
+		int length = (int) (offsets.readLong(8L * (ord + 1)) - start);
+		int common = Math.min(length, key.length);
+		for (int ix = 0; ix < common; ix++) {
+			int cmp = (blob.readByte(start + ix) & 0xff) - (key[ix] & 0xff);
+			if (cmp != 0)
+				return cmp;
+		}
+		return length - key.length;
+	}
+
+}
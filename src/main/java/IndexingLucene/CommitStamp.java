@@ -0,0 +1,62 @@
+package IndexingLucene;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.StringHelper;
+
+/**
+ * The id and generation of a Lucene commit, written into the files MyIndexWriter builds next to the
+ * segments so a reader can tell whether a file still describes the commit it has open.
+ *
+ * The generation alone restarts with every index built from scratch, the id is random for every commit.
+ */
+final class CommitStamp {
+
+	private final byte[] id;
+	private final long generation;
+
+	private CommitStamp( byte[] id, long generation ) {
+		this.id = id;
+		this.generation = generation;
+	}
+
+	/**
+	 * The stamp of the commit ireader is open on.
+	 */
+	static CommitStamp of( Directory directory, DirectoryReader ireader ) throws IOException {
+		IndexCommit commit = ireader.getIndexCommit();
+		byte[] id = SegmentInfos.readCommit(directory, commit.getSegmentsFileName()).getId();
+		return new CommitStamp(id, commit.getGeneration());
+	}
+
+	static CommitStamp read( DataInput input ) throws IOException {
+		byte[] id = new byte[StringHelper.ID_LENGTH];
+		input.readBytes(id, 0, id.length);
+		return new CommitStamp(id, input.readLong());
+	}
+
+	void write( DataOutput output ) throws IOException {
+		output.writeBytes(id, id.length);
+		output.writeLong(generation);
+	}
+
+	byte[] id() {
+		return id.clone();
+	}
+
+	/**
+	 * Whether ireader is open on the commit of this stamp.
+	 */
+	boolean matches( Directory directory, DirectoryReader ireader ) throws IOException {
+		CommitStamp open = of(directory, ireader);
+		return generation == open.generation && Arrays.equals(id, open.id);
+	}
+
+}
@@ -0,0 +1,80 @@
+package IndexingLucene;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, mutable view of one document of the pre-processed corpus.
+ * 
+ * PreProcessedCorpusReader.nextDocument(CorpusDocument) overwrites the same buffers for every document,
+ * so docno() and content() are only valid until the next call. Copy them (toString) to keep them.
+ */
+public class CorpusDocument {
+	
+	private char[] docno = new char[64];
+	private int docnoLength;
+	private char[] content = new char[1 << 16];
+	private int contentLength;
+	private final CharSequence docnoView = new Slice(true);
+	private final CharSequence contentView = new Slice(false);
+	
+	public CharSequence docno() {
+		return docnoView;
+	}
+	
+	public CharSequence content() {
+		return contentView;
+	}
+	
+	void clear() {
+		docnoLength = 0;
+		contentLength = 0;
+	}
+	
+	void appendDocno( char[] src, int offset, int length ) {
+		if (docnoLength + length > docno.length)
+			docno = Arrays.copyOf(docno, Math.max(docnoLength + length, docno.length * 2));
+		System.arraycopy(src, offset, docno, docnoLength, length);
+		docnoLength += length;
+	}
+	
+	void appendContent( char[] src, int offset, int length ) {
+		if (contentLength + length > content.length)
+			content = Arrays.copyOf(content, Math.max(contentLength + length, content.length * 2));
+		System.arraycopy(src, offset, content, contentLength, length);
+		contentLength += length;
+	}
+	
+	/**
+	 * CharSequence over the current docno or content buffer, no copy.
+	 */
+	private class Slice implements CharSequence {
+		private final boolean isDocno;
+		
+		Slice( boolean isDocno ) {
+			this.isDocno = isDocno;
+		}
+		
+		@Override
+		public int length() {
+			return isDocno ? docnoLength : contentLength;
+		}
+		
+		@Override
+		public char charAt( int index ) {
+			if (index >= length())
+				throw new IndexOutOfBoundsException(Integer.toString(index));
+			return isDocno ? docno[index] : content[index];
+		}
+		
+		@Override
+		public CharSequence subSequence( int start, int end ) {
+			return toString().substring(start, end);
+		}
+		
+		@Override
+		public String toString() {
+			return isDocno ? new String(docno, 0, docnoLength) : new String(content, 0, contentLength);
+		}
+	}
+	
+}
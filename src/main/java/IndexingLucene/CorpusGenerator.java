@@ -0,0 +1,265 @@
+package IndexingLucene;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Write a synthetic pre-processed corpus, in the format PreProcessedCorpusReader reads (a docno line then a
+ * content line per document), and a TREC topic file over the same vocabulary, for testing at any scale.
+ *
+ * Terms are "w" followed by their frequency rank, w0 being the most frequent; they are left alone by the
+ * stemmer, so topic titles normalize to index terms. Term ranks follow a Zipf distribution and document
+ * lengths a uniform or log-normal one. The output only depends on the settings and the seed, the corpus and
+ * the topics use separate random streams so either can be regenerated on its own.
+ *
+ * Usage: CorpusGenerator [trectext|trecweb] [documents] [vocabulary] [zipf exponent] [seed] [--force]
+ *
+ * writes Path.ResultHM1 + type and Path.TopicDir, refusing to replace existing files without --force.
+ */
+public class CorpusGenerator {
+
+	public enum LengthModel {
+		UNIFORM, LOG_NORMAL
+	}
+
+	// Topic terms are drawn from below the most frequent ranks, which behave like stop words
+	private static final int TOPIC_MIN_RANK = 10;
+	// First topic number, as in the TREC ad hoc topics
+	private static final int FIRST_TOPIC = 401;
+
+	private long seed = 2140;
+	private int documents = 10000;
+	private int vocabulary = 50000;
+	private double zipfExponent = 1.0;
+	private LengthModel lengthModel = LengthModel.LOG_NORMAL;
+	private int minLength = 20;
+	private int maxLength = 1000;
+	private int topics = 50;
+	private int minTitleLength = 2;
+	private int maxTitleLength = 5;
+	private int descriptionLength = 15;
+	private int narrativeLength = 30;
+
+	public static void main(String[] args) throws IOException {
+		String dataType = args.length > 0 ? args[0] : "trectext";
+		CorpusGenerator generator = new CorpusGenerator();
+		if (args.length > 1 && !args[1].startsWith("--"))
+			generator.setDocuments(Integer.parseInt(args[1]));
+		if (args.length > 2 && !args[2].startsWith("--"))
+			generator.setVocabulary(Integer.parseInt(args[2]));
+		if (args.length > 3 && !args[3].startsWith("--"))
+			generator.setZipfExponent(Double.parseDouble(args[3]));
+		if (args.length > 4 && !args[4].startsWith("--"))
+			generator.setSeed(Long.parseLong(args[4]));
+		boolean force = Arrays.asList(args).contains("--force");
+		java.nio.file.Path corpus = Paths.get(Classes.Path.ResultHM1 + dataType);
+		java.nio.file.Path topicFile = Paths.get(Classes.Path.TopicDir);
+		for (java.nio.file.Path file : new java.nio.file.Path[] { corpus, topicFile }) {
+			if (Files.exists(file) && !force) {
+				System.err.println(file + " exists, use --force to replace it");
+				return;
+			}
+		}
+		long startTime = System.currentTimeMillis();
+		long tokens = generator.writeCorpus(corpus);
+		generator.writeTopics(topicFile);
+		long endTime = System.currentTimeMillis();
+		System.out.println(generator);
+		System.out.println("totaly document count:  " + generator.getDocuments() + ", tokens: " + tokens);
+		System.out.println("generate " + dataType + " corpus running time: " + (endTime - startTime) / 60000.0 + " min");
+	}
+
+	/**
+	 * The term of a frequency rank, rank 0 being the most frequent.
+	 */
+	public static String term( int rank ) {
+		return "w" + rank;
+	}
+
+	public CorpusGenerator setSeed( long seed ) {
+		this.seed = seed;
+		return this;
+	}
+
+	public CorpusGenerator setDocuments( int documents ) {
+		this.documents = documents;
+		return this;
+	}
+
+	/**
+	 * Number of distinct terms the documents are drawn from.
+	 */
+	public CorpusGenerator setVocabulary( int vocabulary ) {
+		this.vocabulary = vocabulary;
+		return this;
+	}
+
+	/**
+	 * The term of rank r has a probability proportional to 1 / (r + 1)^exponent, 1 is natural text,
+	 * larger values concentrate the corpus on fewer terms.
+	 */
+	public CorpusGenerator setZipfExponent( double zipfExponent ) {
+		this.zipfExponent = zipfExponent;
+		return this;
+	}
+
+	/**
+	 * Document lengths in tokens, between min and max. LOG_NORMAL centres them on the geometric mean of
+	 * min and max with most documents within a factor sqrt(max / min) of it, as in real collections;
+	 * UNIFORM spreads them evenly, min == max gives fixed lengths.
+	 */
+	public CorpusGenerator setLengths( LengthModel model, int min, int max ) {
+		if (min < 1 || max < min)
+			throw new IllegalArgumentException("Bad length range " + min + ".." + max);
+		this.lengthModel = model;
+		this.minLength = min;
+		this.maxLength = max;
+		return this;
+	}
+
+	public CorpusGenerator setTopics( int topics ) {
+		this.topics = topics;
+		return this;
+	}
+
+	/**
+	 * Number of terms in each field of a topic, titles vary between titleMin and titleMax.
+	 */
+	public CorpusGenerator setTopicLengths( int titleMin, int titleMax, int description, int narrative ) {
+		this.minTitleLength = titleMin;
+		this.maxTitleLength = titleMax;
+		this.descriptionLength = description;
+		this.narrativeLength = narrative;
+		return this;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getDocuments() {
+		return documents;
+	}
+
+	public int getVocabulary() {
+		return vocabulary;
+	}
+
+	/**
+	 * Docno of the n-th document.
+	 */
+	public static String docno( int n ) {
+		return String.format("SYN-%08d", n);
+	}
+
+	/**
+	 * Write the corpus to file.
+	 *
+	 * @param file
+	 * @return number of tokens written
+	 * @throws IOException
+	 */
+	public long writeCorpus( java.nio.file.Path file ) throws IOException {
+		Zipf zipf = new Zipf(vocabulary, zipfExponent);
+		Random random = new Random(seed);
+		// Median and spread of the log-normal lengths, min and max are two deviations away
+		double logMedian = (Math.log(minLength) + Math.log(maxLength)) / 2;
+		double logSigma = (Math.log(maxLength) - Math.log(minLength)) / 4;
+		long tokens = 0;
+		StringBuilder line = new StringBuilder();
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int n = 0; n < documents; n++) {
+				int length;
+				if (lengthModel == LengthModel.UNIFORM)
+					length = minLength + random.nextInt(maxLength - minLength + 1);
+				else
+					length = (int) Math.round(Math.exp(logMedian + logSigma * random.nextGaussian()));
+				length = Math.max(minLength, Math.min(maxLength, length));
+				line.setLength(0);
+				for (int t = 0; t < length; t++) {
+					if (t > 0)
+						line.append(' ');
+					line.append('w').append(zipf.sample(random));
+				}
+				out.write(docno(n));
+				out.write('\n');
+				out.append(line);
+				out.write('\n');
+				tokens += length;
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Write the topics to file, in the layout of the TREC ad hoc topics.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void writeTopics( java.nio.file.Path file ) throws IOException {
+		Zipf zipf = new Zipf(vocabulary, zipfExponent);
+		Random random = new Random(~seed);
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int n = 0; n < topics; n++) {
+				int titleLength = minTitleLength + random.nextInt(maxTitleLength - minTitleLength + 1);
+				out.write("<top>\n");
+				out.write("<num> Number: " + (FIRST_TOPIC + n) + "\n");
+				out.write("<title> " + topicTerms(zipf, random, titleLength) + "\n\n");
+				out.write("<desc> Description:\n" + topicTerms(zipf, random, descriptionLength) + "\n\n");
+				out.write("<narr> Narrative:\n" + topicTerms(zipf, random, narrativeLength) + "\n\n");
+				out.write("</top>\n\n");
+			}
+		}
+	}
+
+	private String topicTerms( Zipf zipf, Random random, int count ) {
+		StringBuilder sb = new StringBuilder();
+		for (int t = 0; t < count; t++) {
+			int rank;
+			do {
+				rank = zipf.sample(random);
+			} while (rank < TOPIC_MIN_RANK && vocabulary > TOPIC_MIN_RANK);
+			if (t > 0)
+				sb.append(' ');
+			sb.append(term(rank));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("seed=%d documents=%d vocabulary=%d zipf=%.2f lengths=%s[%d..%d] topics=%d",
+				seed, documents, vocabulary, zipfExponent, lengthModel, minLength, maxLength, topics);
+	}
+
+	/**
+	 * Sample ranks 0..n-1 with probability proportional to 1 / (rank + 1)^exponent, by binary search
+	 * over the cumulative distribution.
+	 */
+	public static class Zipf {
+		private final double[] cumulative;
+
+		public Zipf( int n, double exponent ) {
+			cumulative = new double[n];
+			double sum = 0;
+			for (int r = 0; r < n; r++)
+				cumulative[r] = sum += Math.pow(r + 1, -exponent);
+			for (int r = 0; r < n; r++)
+				cumulative[r] /= sum;
+		}
+
+		public int sample( Random random ) {
+			int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+			if (rank < 0)
+				rank = -rank - 1;
+			return Math.min(rank, cumulative.length - 1);
+		}
+	}
+
+}
@@ -0,0 +1,209 @@
+package IndexingLucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.InPlaceMergeSorter;
+
+/**
+ * A docno <-> docid dictionary kept next to the Lucene segments.
+ *
+ * The file holds fixed-width offsets into a blob of UTF-8 docnos (in docid order) and the docids
+ * sorted by docno, so getDocno is two offset reads and getDocid is a binary search over the
+ * memory-mapped file. It is built once when MyIndexWriter closes, and records the commit it was
+ * built from so a reader can tell whether it still describes the index.
+ */
+public class DocnoDictionary implements Closeable {
+
+	public static final String FILE_NAME = "docno.dict";
+	private static final String CODEC = "DocnoDictionary";
+	// Version 0 did not record its commit, such a dictionary never matches
+	private static final int VERSION_START = 0;
+	private static final int VERSION_COMMIT = 1;
+	private static final int VERSION = VERSION_COMMIT;
+	private static final Set<String> DOCNO_FIELD = Collections.singleton("DOCNO");
+
+	private final IndexInput input;
+	private final int size;
+	// The commit the dictionary was built from, null for version 0
+	private final CommitStamp commit;
+	// offsets: long[size + 1], sorted: int[size], blob: the docno bytes
+	private final ByteStringTable docnos;
+	private final RandomAccessInput sorted;
+
+	private DocnoDictionary( IndexInput input ) throws IOException {
+		this.input = input;
+		int version = CodecUtil.checkHeader(input, CODEC, VERSION_START, VERSION);
+		size = input.readInt();
+		long blobLength = input.readLong();
+		commit = version >= VERSION_COMMIT ? CommitStamp.read(input) : null;
+		long start = input.getFilePointer();
+		RandomAccessInput offsets = input.randomAccessSlice(start, 8L * (size + 1));
+		start += 8L * (size + 1);
+		sorted = input.randomAccessSlice(start, 4L * size);
+		start += 4L * size;
+		docnos = new ByteStringTable(offsets, input.randomAccessSlice(start, blobLength));
+	}
+
+	/**
+	 * Open the dictionary of the index in the directory.
+	 *
+	 * @param directory
+	 * @return null if the index was built without a dictionary
+	 * @throws IOException
+	 */
+	public static DocnoDictionary open( Directory directory ) throws IOException {
+		if (!Arrays.asList(directory.listAll()).contains(FILE_NAME))
+			return null;
+		return new DocnoDictionary(directory.openInput(FILE_NAME, IOContext.READ));
+	}
+
+	/**
+	 * Build the dictionary from the DOCNO stored field of the committed index, replacing any
+	 * dictionary written for an earlier commit.
+	 *
+	 * @param directory
+	 * @param ireader a reader on the last commit in the directory
+	 * @throws IOException
+	 */
+	public static void write( Directory directory, DirectoryReader ireader ) throws IOException {
+		final BytesRef[] docnos = new BytesRef[ireader.maxDoc()];
+		for (int docid = 0; docid < docnos.length; docid++) {
+			String docno = ireader.document(docid, DOCNO_FIELD).get("DOCNO");
+			docnos[docid] = new BytesRef(docno == null ? "" : docno);
+		}
+		final int[] order = new int[docnos.length];
+		for (int ix = 0; ix < order.length; ix++)
+			order[ix] = ix;
+		new InPlaceMergeSorter() {
+			@Override
+			protected int compare( int i, int j ) {
+				return docnos[order[i]].compareTo(docnos[order[j]]);
+			}
+
+			@Override
+			protected void swap( int i, int j ) {
+				int tmp = order[i];
+				order[i] = order[j];
+				order[j] = tmp;
+			}
+		}.sort(0, order.length);
+
+		if (Arrays.asList(directory.listAll()).contains(FILE_NAME))
+			directory.deleteFile(FILE_NAME);
+		try (IndexOutput output = directory.createOutput(FILE_NAME, IOContext.DEFAULT)) {
+			CodecUtil.writeHeader(output, CODEC, VERSION);
+			output.writeInt(docnos.length);
+			output.writeLong(ByteStringTable.blobLength(docnos, docnos.length));
+			CommitStamp.of(directory, ireader).write(output);
+			ByteStringTable.writeOffsets(output, docnos, docnos.length);
+			for (int docid : order)
+				output.writeInt(docid);
+			ByteStringTable.writeBlob(output, docnos, docnos.length);
+			CodecUtil.writeFooter(output);
+		}
+	}
+
+	/**
+	 * Whether the dictionary was built from the commit ireader is open on. Docids may mean other
+	 * documents in any other commit.
+	 *
+	 * @param directory
+	 * @param ireader
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean isFor( Directory directory, DirectoryReader ireader ) throws IOException {
+		return commit != null && commit.matches(directory, ireader);
+	}
+
+	/**
+	 * Number of documents in the dictionary.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retrive the docno for the integer docid.
+	 *
+	 * @param docid
+	 * @return null if the docid is out of range
+	 * @throws IOException
+	 */
+	public String getDocno( int docid ) throws IOException {
+		if (docid < 0 || docid >= size)
+			return null;
+		return docnos.get(docid);
+	}
+
+	/**
+	 * Get the docid for the requested docno by binary search over the sorted docids.
+	 *
+	 * @param docno
+	 * @return -1 if the docno does not exist in the index
+	 * @throws IOException
+	 */
+	public int getDocid( String docno ) throws IOException {
+		byte[] key = docno.getBytes(StandardCharsets.UTF_8);
+		int low = 0, high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int docid = sorted.readInt(4L * mid);
+			int cmp = docnos.compare(docid, key);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return docid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Resolve many docids at once, the result keeps the order of the input.
+	 *
+	 * @param docids
+	 * @return
+	 * @throws IOException
+	 */
+	public String[] getDocnos( int[] docids ) throws IOException {
+		String[] result = new String[docids.length];
+		for (int ix = 0; ix < docids.length; ix++)
+			result[ix] = getDocno(docids[ix]);
+		return result;
+	}
+
+	/**
+	 * Resolve many docnos at once, the result keeps the order of the input.
+	 *
+	 * @param docnos
+	 * @return
+	 * @throws IOException
+	 */
+	public int[] getDocids( String[] docnos ) throws IOException {
+		int[] docids = new int[docnos.length];
+		for (int ix = 0; ix < docnos.length; ix++)
+			docids[ix] = getDocid(docnos[ix]);
+		return docids;
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+
+}
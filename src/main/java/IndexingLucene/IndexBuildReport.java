@@ -0,0 +1,154 @@
+package IndexingLucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+
+/**
+ * What happened while MyIndexWriter built an index: segment flushes, merges and the time they took,
+ * and the segments the index ended up with. Merges are counted while the writer runs, the rest is
+ * filled in when it closes.
+ *
+ * Flushes are not observed, they are worked out from the segments: every flush adds a segment and
+ * every merge replaces its segments by one, so the flushes are the segments of the final commit,
+ * less those the index had when the writer opened, plus the segments the merges took away.
+ */
+public class IndexBuildReport {
+
+	/**
+	 * One segment of the final commit.
+	 */
+	public static class Segment {
+		public final String name;
+		public final int docCount;
+		public final int deletedDocs;
+		public final long sizeInBytes;
+		public final boolean compoundFile;
+
+		Segment( String name, int docCount, int deletedDocs, long sizeInBytes, boolean compoundFile ) {
+			this.name = name;
+			this.docCount = docCount;
+			this.deletedDocs = deletedDocs;
+			this.sizeInBytes = sizeInBytes;
+			this.compoundFile = compoundFile;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s docs=%d deleted=%d size=%.1fMB%s", name, docCount, deletedDocs,
+					sizeInBytes / 1048576.0, compoundFile ? " cfs" : "");
+		}
+	}
+
+	private final String profile;
+	private final long startNanos = System.nanoTime();
+	private final LongAdder mergeCount = new LongAdder();
+	// Segments the merges replaced, less the one each merge made
+	private final LongAdder mergedAway = new LongAdder();
+	private int segmentsAtOpen;
+	private long flushCount;
+	private final LongAdder mergeNanos = new LongAdder();
+	private long forceMergeNanos;
+	private long buildNanos;
+	private List<Segment> segments = Collections.emptyList();
+
+	IndexBuildReport( IndexingProfile profile ) {
+		this.profile = profile.toString();
+	}
+
+	/**
+	 * Record the segments the index has when the writer opens it, none for a new index.
+	 */
+	void started( Directory directory ) throws IOException {
+		segmentsAtOpen = DirectoryReader.indexExists(directory) ? SegmentInfos.readLatestCommit(directory).size() : 0;
+	}
+
+	void mergeDone( MergePolicy.OneMerge merge, long nanos ) {
+		// An aborted merge leaves its segments in place
+		if (merge.rateLimiter.getAbort())
+			return;
+		mergeCount.increment();
+		mergedAway.add(merge.segments.size() - 1);
+		mergeNanos.add(nanos);
+	}
+
+	void forceMergeDone( long nanos ) {
+		forceMergeNanos = nanos;
+	}
+
+	/**
+	 * Record the segments of the last commit and stop the build clock.
+	 */
+	void finish( Directory directory ) throws IOException {
+		List<Segment> result = new ArrayList<>();
+		for (SegmentCommitInfo info : SegmentInfos.readLatestCommit(directory))
+			result.add(new Segment(info.info.name, info.info.maxDoc(), info.getDelCount(), info.sizeInBytes(),
+					info.info.getUseCompoundFile()));
+		segments = Collections.unmodifiableList(result);
+		flushCount = segments.size() - segmentsAtOpen + mergedAway.sum();
+		buildNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Segments flushed from the RAM buffer, known once the writer is closed.
+	 */
+	public long getFlushCount() {
+		return flushCount;
+	}
+
+	/**
+	 * Merges run while indexing and by the force merge.
+	 */
+	public long getMergeCount() {
+		return mergeCount.sum();
+	}
+
+	/**
+	 * Time spent in merges, summed over the merge threads, in ms.
+	 */
+	public double getMergeMillis() {
+		return mergeNanos.sum() / 1e6;
+	}
+
+	/**
+	 * Wall time of the force merge at close, 0 if the profile does not force merge, in ms.
+	 */
+	public double getForceMergeMillis() {
+		return forceMergeNanos / 1e6;
+	}
+
+	/**
+	 * Wall time from opening the writer to the end of close, in ms.
+	 */
+	public double getBuildMillis() {
+		return buildNanos / 1e6;
+	}
+
+	public List<Segment> getSegments() {
+		return segments;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("profile: ").append(profile).append('\n');
+		sb.append(String.format("build time: %.0f ms, flushes: %d, merges: %d (%.0f ms merging, force merge %.0f ms)%n",
+				getBuildMillis(), getFlushCount(), getMergeCount(), getMergeMillis(), getForceMergeMillis()));
+		long totalBytes = 0;
+		for (Segment segment : segments)
+			totalBytes += segment.sizeInBytes;
+		sb.append(String.format("segments: %d, %.1fMB", segments.size(), totalBytes / 1048576.0));
+		for (Segment segment : segments)
+			sb.append("\n  ").append(segment);
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,236 @@
+package IndexingLucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeScheduler;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.index.TieredMergePolicy;
+
+/**
+ * How MyIndexWriter flushes and merges while it builds the index.
+ *
+ * {@link #defaults()} is the original configuration: a flush every 10000 documents (or 16 MB) and
+ * Lucene's default merging. {@link #bulkLoad()} flushes by RAM only, merges less often into bigger
+ * segments, skips compound files and merges down to one segment when the writer closes, which builds
+ * faster and leaves the fewest segments to search.
+ */
+public class IndexingProfile {
+
+	public enum MergePolicyKind {
+		TIERED, LOG_BYTE_SIZE, NONE
+	}
+
+	private double ramBufferMB = IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB;
+	private int maxBufferedDocs = 10000;
+	private boolean serialMerges = false;
+	private int maxMergeThreads = ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS;
+	private int maxMergeCount = ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS;
+	private boolean mergeIOThrottle = true;
+	private MergePolicyKind mergePolicy = MergePolicyKind.TIERED;
+	private double mergeFactor = 10;
+	private double maxMergedSegmentMB = 5 * 1024;
+	private boolean useCompoundFile = true;
+	private int forceMergeSegments = 0;
+	private boolean storeTermVectors = true;
+
+	/**
+	 * The configuration MyIndexWriter always used.
+	 */
+	public static IndexingProfile defaults() {
+		return new IndexingProfile();
+	}
+
+	/**
+	 * Flush by a 256 MB RAM buffer, merge 30 segments at a time without compound files or IO
+	 * throttling, and force merge to a single segment at close.
+	 */
+	public static IndexingProfile bulkLoad() {
+		return new IndexingProfile()
+				.setRamBufferMB(256)
+				.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH)
+				.setMergeFactor(30)
+				.setMergeIOThrottle(false)
+				.setUseCompoundFile(false)
+				.setForceMergeSegments(1);
+	}
+
+	/**
+	 * Flush once the buffered documents use this much RAM, IndexWriterConfig.DISABLE_AUTO_FLUSH for
+	 * no RAM limit.
+	 */
+	public IndexingProfile setRamBufferMB( double ramBufferMB ) {
+		this.ramBufferMB = ramBufferMB;
+		return this;
+	}
+
+	/**
+	 * Flush every maxBufferedDocs documents, IndexWriterConfig.DISABLE_AUTO_FLUSH to flush by RAM only.
+	 */
+	public IndexingProfile setMaxBufferedDocs( int maxBufferedDocs ) {
+		this.maxBufferedDocs = maxBufferedDocs;
+		return this;
+	}
+
+	/**
+	 * Run merges on the indexing thread that triggers them instead of on background threads.
+	 */
+	public IndexingProfile setSerialMerges( boolean serialMerges ) {
+		this.serialMerges = serialMerges;
+		return this;
+	}
+
+	/**
+	 * Limits of the background merge scheduler, see ConcurrentMergeScheduler.setMaxMergesAndThreads.
+	 */
+	public IndexingProfile setMaxMergesAndThreads( int maxMergeCount, int maxMergeThreads ) {
+		this.maxMergeCount = maxMergeCount;
+		this.maxMergeThreads = maxMergeThreads;
+		return this;
+	}
+
+	/**
+	 * Let the background merge scheduler slow merges down to leave IO for searches. Nothing searches
+	 * an index while it is bulk loaded.
+	 */
+	public IndexingProfile setMergeIOThrottle( boolean mergeIOThrottle ) {
+		this.mergeIOThrottle = mergeIOThrottle;
+		return this;
+	}
+
+	public IndexingProfile setMergePolicy( MergePolicyKind mergePolicy ) {
+		this.mergePolicy = mergePolicy;
+		return this;
+	}
+
+	/**
+	 * Segments merged at once: segments per tier for TIERED, the merge factor for LOG_BYTE_SIZE.
+	 */
+	public IndexingProfile setMergeFactor( double mergeFactor ) {
+		this.mergeFactor = mergeFactor;
+		return this;
+	}
+
+	/**
+	 * Largest segment the merge policy produces by itself (a force merge ignores it).
+	 */
+	public IndexingProfile setMaxMergedSegmentMB( double maxMergedSegmentMB ) {
+		this.maxMergedSegmentMB = maxMergedSegmentMB;
+		return this;
+	}
+
+	/**
+	 * Pack each flushed and merged segment into a compound file.
+	 */
+	public IndexingProfile setUseCompoundFile( boolean useCompoundFile ) {
+		this.useCompoundFile = useCompoundFile;
+		return this;
+	}
+
+	/**
+	 * Merge the index down to at most this many segments when the writer closes, 0 to leave it as built.
+	 */
+	public IndexingProfile setForceMergeSegments( int forceMergeSegments ) {
+		this.forceMergeSegments = forceMergeSegments;
+		return this;
+	}
+
+	/**
+	 * Keep a term vector of CONTENT for every document. Nothing reads them once the index has the
+	 * LENGTH column and the docno dictionary, they only make the index about twice as big.
+	 */
+	public IndexingProfile setStoreTermVectors( boolean storeTermVectors ) {
+		this.storeTermVectors = storeTermVectors;
+		return this;
+	}
+
+	public boolean getStoreTermVectors() {
+		return storeTermVectors;
+	}
+
+	public int getForceMergeSegments() {
+		return forceMergeSegments;
+	}
+
+	/**
+	 * Set the profile on the writer configuration, merges are counted into report.
+	 */
+	void apply( IndexWriterConfig config, IndexBuildReport report ) {
+		// Lowest limit first, so the two flush triggers are never both disabled in between
+		if (maxBufferedDocs == IndexWriterConfig.DISABLE_AUTO_FLUSH) {
+			config.setRAMBufferSizeMB(ramBufferMB);
+			config.setMaxBufferedDocs(maxBufferedDocs);
+		} else {
+			config.setMaxBufferedDocs(maxBufferedDocs);
+			config.setRAMBufferSizeMB(ramBufferMB);
+		}
+		config.setUseCompoundFile(useCompoundFile);
+		config.setMergePolicy(newMergePolicy());
+		config.setMergeScheduler(newMergeScheduler(report));
+	}
+
+	private MergePolicy newMergePolicy() {
+		switch (mergePolicy) {
+		case LOG_BYTE_SIZE:
+			LogByteSizeMergePolicy log = new LogByteSizeMergePolicy();
+			log.setMergeFactor((int) mergeFactor);
+			log.setMaxMergeMB(maxMergedSegmentMB);
+			if (!useCompoundFile)
+				log.setNoCFSRatio(0.0);
+			return log;
+		case NONE:
+			return NoMergePolicy.INSTANCE;
+		default:
+			TieredMergePolicy tiered = new TieredMergePolicy();
+			tiered.setSegmentsPerTier(mergeFactor);
+			tiered.setMaxMergeAtOnce((int) Math.max(2, mergeFactor));
+			tiered.setMaxMergedSegmentMB(maxMergedSegmentMB);
+			if (!useCompoundFile)
+				tiered.setNoCFSRatio(0.0);
+			return tiered;
+		}
+	}
+
+	private MergeScheduler newMergeScheduler( final IndexBuildReport report ) {
+		if (serialMerges) {
+			return new SerialMergeScheduler() {
+				@Override
+				public synchronized void merge( IndexWriter writer, MergeTrigger trigger, boolean newMergesFound ) throws IOException {
+					MergePolicy.OneMerge merge;
+					while ((merge = writer.getNextMerge()) != null) {
+						long start = System.nanoTime();
+						writer.merge(merge);
+						report.mergeDone(merge, System.nanoTime() - start);
+					}
+				}
+			};
+		}
+		ConcurrentMergeScheduler scheduler = new ConcurrentMergeScheduler() {
+			@Override
+			protected void doMerge( IndexWriter writer, MergePolicy.OneMerge merge ) throws IOException {
+				long start = System.nanoTime();
+				super.doMerge(writer, merge);
+				report.mergeDone(merge, System.nanoTime() - start);
+			}
+		};
+		if (maxMergeCount != ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS)
+			scheduler.setMaxMergesAndThreads(maxMergeCount, maxMergeThreads);
+		if (!mergeIOThrottle)
+			scheduler.disableAutoIOThrottle();
+		return scheduler;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ramBufferMB=%s maxBufferedDocs=%d merges=%s ioThrottle=%s mergePolicy=%s mergeFactor=%s maxMergedSegmentMB=%s compoundFile=%s forceMergeSegments=%d termVectors=%s",
+				ramBufferMB, maxBufferedDocs, serialMerges ? "serial" : "concurrent", mergeIOThrottle, mergePolicy, mergeFactor,
+				maxMergedSegmentMB, useCompoundFile, forceMergeSegments, storeTermVectors);
+	}
+
+}
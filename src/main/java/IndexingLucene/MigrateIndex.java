@@ -0,0 +1,128 @@
+package IndexingLucene;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Rewrite an index built with term vectors into the compact layout without them.
+ *
+ * Only frequencies are indexed, so a document's term vector holds everything the index knows about
+ * its content: each document is re-indexed from its vector (every term repeated tf times), which
+ * gives the same postings, LENGTH column and docno dictionary. The new index is built next to the
+ * old one; with --replace the old one is kept as a backup and the new one takes its place.
+ *
+ * Usage: MigrateIndex [trectext|trecweb] [--replace]
+ */
+public class MigrateIndex {
+
+	private static final Set<String> DOCNO_FIELD = Collections.singleton("DOCNO");
+
+	public static void main(String[] args) throws Exception {
+		String dataType = args.length > 0 ? args[0] : "trectext";
+		boolean replace = args.length > 1 && args[1].equals("--replace");
+		Path source = Paths.get(dataType.equals("trectext") ? Classes.Path.IndexTextDir : Classes.Path.IndexWebDir).toAbsolutePath().normalize();
+		Path target = source.resolveSibling(source.getFileName() + "-compact");
+		Path backup = source.resolveSibling(source.getFileName() + "-termvectors");
+
+		long startTime = System.currentTimeMillis();
+		long count = migrate(source, target);
+		long endTime = System.currentTimeMillis();
+		long before = sizeOf(source);
+		long after = sizeOf(target);
+		System.out.println("migrated document count:  " + count);
+		System.out.println("migrate " + dataType + " index running time: " + (endTime - startTime) / 60000.0 + " min");
+		System.out.println(String.format("index size: %.1fMB with term vectors, %.1fMB without (%.1f%%)",
+				before / 1048576.0, after / 1048576.0, 100.0 * after / before));
+
+		if (replace) {
+			deleteIndex(backup);
+			Files.move(source, backup);
+			Files.move(target, source);
+			System.out.println("replaced " + source + ", the old index is in " + backup);
+		} else {
+			System.out.println("compact index written to " + target);
+		}
+	}
+
+	/**
+	 * Build the compact index in target from the index in source, target is emptied first.
+	 *
+	 * @param source an index with term vectors on CONTENT
+	 * @param target
+	 * @return number of documents migrated
+	 * @throws IOException
+	 */
+	public static long migrate(Path source, Path target) throws IOException {
+		deleteIndex(target);
+		IndexingProfile profile = IndexingProfile.bulkLoad().setStoreTermVectors(false);
+		try (Directory directory = FSDirectory.open(source);
+				DirectoryReader ireader = DirectoryReader.open(directory)) {
+			FieldInfo content = MultiFields.getMergedFieldInfos(ireader).fieldInfo("CONTENT");
+			if (content == null || !content.hasVectors())
+				throw new IllegalStateException(source + " has no term vectors on CONTENT, nothing to migrate");
+			MyIndexWriter output = new MyIndexWriter(target, 0, profile);
+			Bits liveDocs = MultiFields.getLiveDocs(ireader);
+			StringBuilder text = new StringBuilder();
+			long count = 0;
+			for (int docid = 0; docid < ireader.maxDoc(); docid++) {
+				if (liveDocs != null && !liveDocs.get(docid))
+					continue;
+				String docno = ireader.document(docid, DOCNO_FIELD).get("DOCNO");
+				Terms vector = ireader.getTermVector(docid, "CONTENT");
+				text.setLength(0);
+				if (vector != null) {
+					TermsEnum termsEnum = vector.iterator();
+					BytesRef term;
+					while ((term = termsEnum.next()) != null) {
+						String token = term.utf8ToString();
+						for (long tf = termsEnum.totalTermFreq(); tf > 0; tf--)
+							text.append(token).append(' ');
+					}
+				}
+				output.index(docno, text.toString());
+				count++;
+			}
+			output.close();
+			System.out.println(output.getBuildReport());
+			return count;
+		}
+	}
+
+	/**
+	 * Total size of the files in an index directory, in bytes.
+	 */
+	static long sizeOf(Path dir) throws IOException {
+		long size = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path file : files)
+				size += Files.size(file);
+		}
+		return size;
+	}
+
+	private static void deleteIndex(Path dir) throws IOException {
+		if (!Files.isDirectory(dir))
+			return;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path file : files)
+				Files.delete(file);
+		}
+		Files.delete(dir);
+	}
+
+}
@@ -2,43 +2,100 @@ package IndexingLucene;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Bits;
+
+import Classes.IndexAccess;
+import Classes.PostingList;
+import Classes.PostingsIterator;
 
 /**
  * A class for reading your index.
  */
-public class MyIndexReader {
+public class MyIndexReader implements IndexAccess {
 	protected File dir;
 	private Directory directory;
 	private DirectoryReader ireader;
 	private IndexSearcher isearcher;
+	// Null if the index has no dictionary or one built from another commit
+	private DocnoDictionary docnoDict;
+	// docno -> docid from the stored fields, built on first use when there is no dictionary
+	private volatile Map<String, Integer> storedDocids;
+	// Opened on first use, stays null if the index has no (current) statistics table
+	private TermStatsTable termStats;
+	private volatile boolean termStatsOpened;
+	private volatile int[] docLengths;
+	private final long indexVersion;
 	
 	public MyIndexReader( String dataType ) throws IOException {
-		if (dataType.equals("trectext")) {
-			directory = FSDirectory.open(Paths.get(Classes.Path.IndexTextDir));  
-		} else {
-			directory = FSDirectory.open(Paths.get(Classes.Path.IndexWebDir)); 
-		}
+		this(Paths.get(dataType.equals("trectext") ? Classes.Path.IndexTextDir : Classes.Path.IndexWebDir));
+	}
+	
+	/**
+	 * Open the index written by MyIndexWriter in indexDir.
+	 * 
+	 * @param indexDir
+	 * @throws IOException
+	 */
+	public MyIndexReader( Path indexDir ) throws IOException {
+		directory = FSDirectory.open(indexDir);
 		ireader = DirectoryReader.open(directory);
 		isearcher = new IndexSearcher(ireader);
+		docnoDict = DocnoDictionary.open(directory);
+		if (docnoDict != null && !docnoDict.isFor(directory, ireader)) {
+			// Written for another commit, its docids may name other documents now
+			docnoDict.close();
+			docnoDict = null;
+		}
+		// The version alone restarts with every index built from scratch, the commit id is random
+		byte[] commitId = CommitStamp.of(directory, ireader).id();
+		indexVersion = ByteBuffer.wrap(commitId).getLong() ^ ireader.getVersion();
 	}
 
+	/**
+	 * The underlying Lucene reader, for searching the index with Lucene queries.
+	 * 
+	 * @return
+	 */
+	public IndexReader getIndexReader() {
+		return ireader;
+	}
+	
+	/**
+	 * Identifies the commit this reader was opened on.
+	 * 
+	 * @return
+	 */
+	public long getIndexVersion() {
+		return indexVersion;
+	}
+	
 	public long getTotalContentLength() {
 		try {
+			TermStatsTable stats = getTermStats();
+			if (stats != null)
+				return stats.getTotalLength();
 			return this.ireader.getSumTotalTermFreq("CONTENT");
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -55,10 +112,36 @@ public class MyIndexReader {
 	 * @throws IOException 
 	 */
 	public int getDocid( String docno ) throws IOException {
-		// you should implement this method.
-		Query query = new TermQuery(new Term("DOCNO", docno));
-		TopDocs tops= isearcher.search(query,1);
-		return tops.scoreDocs[0].doc;
+		if (docnoDict != null)
+			return docnoDict.getDocid(docno);
+		Integer docid = getStoredDocids().get(docno);
+		return docid == null ? -1 : docid;
+	}
+	
+	/**
+	 * Without a (current) dictionary DOCNO is only stored, so the first lookup reads the stored
+	 * fields of every document, O(maxDoc), into a map that later lookups share.
+	 */
+	private Map<String, Integer> getStoredDocids() throws IOException {
+		Map<String, Integer> docids = storedDocids;
+		if (docids == null) {
+			synchronized (this) {
+				docids = storedDocids;
+				if (docids == null) {
+					docids = new HashMap<>();
+					Bits liveDocs = MultiFields.getLiveDocs(ireader);
+					for (int docid = 0; docid < ireader.maxDoc(); docid++) {
+						if (liveDocs != null && !liveDocs.get(docid))
+							continue;
+						String docno = getDocno(docid);
+						if (docno != null)
+							docids.putIfAbsent(docno, docid);
+					}
+					storedDocids = docids;
+				}
+			}
+		}
+		return docids;
 	}
 	
 	/**
@@ -69,10 +152,44 @@ public class MyIndexReader {
 	 * @throws IOException 
 	 */
 	public String getDocno( int docid ) throws IOException {
-		// you should implement this method.
+		if (docnoDict != null)
+			return docnoDict.getDocno(docid);
 		Document doc = ireader.document(docid);
 		return (doc==null)?null:doc.get("DOCNO");
 	}
+	
+	/**
+	 * Retrive the docnos of many docids at once, in the order of the given docids.
+	 * Passing the docids in ascending order keeps the reads sequential.
+	 * 
+	 * @param docids
+	 * @return
+	 * @throws IOException
+	 */
+	public String[] getDocnos( int[] docids ) throws IOException {
+		if (docnoDict != null)
+			return docnoDict.getDocnos(docids);
+		String[] result = new String[docids.length];
+		for (int ix = 0; ix < docids.length; ix++)
+			result[ix] = getDocno(docids[ix]);
+		return result;
+	}
+	
+	/**
+	 * Get the docids of many docnos at once, -1 for each docno not in the index.
+	 * 
+	 * @param docnos
+	 * @return
+	 * @throws IOException
+	 */
+	public int[] getDocids( String[] docnos ) throws IOException {
+		if (docnoDict != null)
+			return docnoDict.getDocids(docnos);
+		int[] result = new int[docnos.length];
+		for (int ix = 0; ix < docnos.length; ix++)
+			result[ix] = getDocid(docnos[ix]);
+		return result;
+	}
 
 	
 	/**
@@ -101,32 +218,197 @@ public class MyIndexReader {
 	 * @return
 	 */
 	public int[][] getPostingList( String token ) throws IOException {
-		// you should implement this method.
+		PostingList postings = getPostings(token);
+		return (postings==null)?null:postings.toArray();
+	}
+	
+	/**
+	 * Get the posting list for the requested token as parallel docid/freq arrays,
+	 * ranked by docid from the smallest to the largest.
+	 * 
+	 * @param token
+	 * @return null if the token is not in the index
+	 * @throws IOException
+	 */
+	public PostingList getPostings( String token ) throws IOException {
 		Term tm = new Term("CONTENT", token);
 		int df = ireader.docFreq(tm);
 		if(df==0)
 			return null;
-		Query query = new TermQuery(tm);
-		TopDocs tops= isearcher.search(query,df);		
-		ScoreDoc[] scoreDoc = tops.scoreDocs;
-		int[][] posting = new int[df][];
+		// Walk the postings of every segment in order, leaves are sorted by docBase so the
+		// global docids come out ascending without any scoring or term vector access.
+		int[] docids = new int[df];
+		int[] freqs = new int[df];
 		int ix = 0;
-		Terms vector;
-		TermsEnum termsEnum;
-		BytesRef text;
-		for (ScoreDoc score : scoreDoc){
-			int id = score.doc;
-			int freq=0;
-			vector = ireader.getTermVector(id, "CONTENT");
-			termsEnum = vector.iterator();
-			while ((text = termsEnum.next()) != null) {
-			    if(text.utf8ToString().equals(token))
-			    	freq+= (int) termsEnum.totalTermFreq();
+		PostingsEnum postings = null;
+		for (LeafReaderContext leaf : ireader.leaves()) {
+			postings = leaf.reader().postings(tm, PostingsEnum.FREQS);
+			if (postings == null)
+				continue;
+			Bits liveDocs = leaf.reader().getLiveDocs();
+			int doc;
+			while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+				if (liveDocs != null && !liveDocs.get(doc))
+					continue;
+				docids[ix] = leaf.docBase + doc;
+				freqs[ix] = postings.freq();
+				ix++;
 			}
-			posting[ix] = new int[] { id, freq };
-			ix++;
 		}
-		return posting;
+		// docFreq still counts deleted documents until their segment is merged away
+		return new PostingList(docids, freqs, ix);
+	}
+	
+	/**
+	 * Walk the posting list of the token segment by segment without loading it, advance skips inside a
+	 * segment with Lucene's skip data.
+	 * 
+	 * @param token
+	 * @return null if the token is not in the index
+	 * @throws IOException
+	 */
+	public PostingsIterator openPostings( String token ) throws IOException {
+		Term tm = new Term("CONTENT", token);
+		int df = ireader.docFreq(tm);
+		if(df==0)
+			return null;
+		return new LeafPostingsIterator(tm, df);
+	}
+	
+	/**
+	 * Global docids over the postings of every leaf in turn, deleted documents are skipped
+	 */
+	private class LeafPostingsIterator implements PostingsIterator {
+		private final Term term;
+		private final int df;
+		// Leaf of the current postings, -1 before the first one
+		private int leafIx = -1;
+		private int docBase;
+		private PostingsEnum postings;
+		private Bits liveDocs;
+		private int docid = -1;
+		
+		LeafPostingsIterator( Term term, int df ) {
+			this.term = term;
+			this.df = df;
+		}
+		
+		@Override
+		public int docFreq() {
+			return df;
+		}
+		
+		@Override
+		public int docid() {
+			return docid;
+		}
+		
+		@Override
+		public int freq() throws IOException {
+			return postings.freq();
+		}
+		
+		@Override
+		public int nextDoc() throws IOException {
+			if (docid == NO_MORE_DOCS)
+				return docid;
+			int doc = postings == null ? DocIdSetIterator.NO_MORE_DOCS : postings.nextDoc();
+			return docid = live(doc);
+		}
+		
+		@Override
+		public int advance( int target ) throws IOException {
+			if (docid >= target)
+				return docid;
+			// Skip the leaves before the one holding target without opening their postings
+			int targetLeaf = ReaderUtil.subIndex(target, ireader.leaves());
+			if (targetLeaf > leafIx)
+				openLeaf(targetLeaf);
+			int doc = postings == null ? DocIdSetIterator.NO_MORE_DOCS : postings.advance(target - docBase);
+			return docid = live(doc);
+		}
+		
+		/**
+		 * The global docid of doc, a docid of the current leaf, or of the next live posting after it,
+		 * moving on to the following leaves once the current one is exhausted
+		 */
+		private int live( int doc ) throws IOException {
+			while (true) {
+				while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+					if (liveDocs == null || liveDocs.get(doc))
+						return docBase + doc;
+					doc = postings.nextDoc();
+				}
+				do {
+					if (leafIx + 1 >= ireader.leaves().size()) {
+						postings = null;
+						return NO_MORE_DOCS;
+					}
+					openLeaf(leafIx + 1);
+				} while (postings == null);
+				doc = postings.nextDoc();
+			}
+		}
+		
+		private void openLeaf( int ix ) throws IOException {
+			LeafReaderContext leaf = ireader.leaves().get(ix);
+			leafIx = ix;
+			docBase = leaf.docBase;
+			liveDocs = leaf.reader().getLiveDocs();
+			postings = leaf.reader().postings(term, PostingsEnum.FREQS);
+		}
+	}
+	
+	/**
+	 * Return the largest frequency of the token in any one document, 0 if the token is not in the index.
+	 * 
+	 * @param token
+	 * @return
+	 * @throws IOException
+	 */
+	public int maxTermFreq( String token ) throws IOException {
+		TermStatsTable stats = getTermStats();
+		if (stats != null) {
+			int ord = stats.find(token);
+			return ord < 0 ? 0 : stats.maxTermFreq(ord);
+		}
+		PostingList postings = getPostings(token);
+		int maxTf = 0;
+		for (int ix = 0; postings != null && ix < postings.size(); ix++)
+			maxTf = Math.max(maxTf, postings.freq(ix));
+		return maxTf;
+	}
+	
+	/**
+	 * Return the length of the shortest document that contains the token, 0 if the token is not in the index.
+	 * 
+	 * @param token
+	 * @return
+	 * @throws IOException
+	 */
+	public int minDocLength( String token ) throws IOException {
+		TermStatsTable stats = getTermStats();
+		if (stats != null) {
+			int ord = stats.find(token);
+			return ord < 0 ? 0 : stats.minDocLength(ord);
+		}
+		PostingList postings = getPostings(token);
+		if (postings == null || postings.size() == 0)
+			return 0;
+		int[] lengths = getDocLengths();
+		int minLength = Integer.MAX_VALUE;
+		for (int ix = 0; ix < postings.size(); ix++)
+			minLength = Math.min(minLength, lengths[postings.docid(ix)]);
+		return minLength;
+	}
+	
+	/**
+	 * One more than the largest docid in the index.
+	 * 
+	 * @return
+	 */
+	public int maxDoc() {
+		return ireader.maxDoc();
 	}
 	
 	/**
@@ -136,6 +418,11 @@ public class MyIndexReader {
 	 * @return
 	 */
 	public int DocFreq( String token ) throws IOException {
+		TermStatsTable stats = getTermStats();
+		if (stats != null) {
+			int ord = stats.find(token);
+			return ord < 0 ? 0 : stats.docFreq(ord);
+		}
 		Term tm = new Term("CONTENT", token);
 		int df = ireader.docFreq( tm );
 		return df;
@@ -149,6 +436,11 @@ public class MyIndexReader {
 	 */
 	public long CollectionFreq( String token ) throws IOException {
 		// you should implement this method.
+		TermStatsTable stats = getTermStats();
+		if (stats != null) {
+			int ord = stats.find(token);
+			return ord < 0 ? 0 : stats.collectionFreq(ord);
+		}
 		Term tm = new Term("CONTENT", token);
 		long ctf=ireader.totalTermFreq(tm);
 		return ctf;
@@ -162,18 +454,87 @@ public class MyIndexReader {
 	 * @throws IOException
 	 */
 	public int docLength( int docid ) throws IOException {
-		int doc_length = 0;
-		Terms vector = ireader.getTermVector( docid, "CONTENT" );
-		TermsEnum termsEnum = vector.iterator();
-		BytesRef text;
-		while ((text = termsEnum.next()) != null) {
-			doc_length+= (int) termsEnum.totalTermFreq();
+		return getDocLengths()[docid];
+	}
+	
+	/**
+	 * Get the lengths of the first count documents of docids at once, lengths[i] receives the length of docids[i].
+	 * 
+	 * @param docids
+	 * @param lengths
+	 * @param count
+	 * @throws IOException
+	 */
+	public void docLength( int[] docids, int[] lengths, int count ) throws IOException {
+		int[] column = getDocLengths();
+		for (int ix = 0; ix < count; ix++)
+			lengths[ix] = column[docids[ix]];
+	}
+	
+	/**
+	 * The length column is loaded once on first use and then read as a plain array.
+	 */
+	private int[] getDocLengths() throws IOException {
+		int[] lengths = docLengths;
+		if (lengths == null) {
+			synchronized (this) {
+				lengths = docLengths;
+				if (lengths == null)
+					docLengths = lengths = loadDocLengths(ireader);
+			}
+		}
+		return lengths;
+	}
+	
+	/**
+	 * The statistics table written when the index was closed, memory-mapped on first use so statistics
+	 * never need the postings. A table built from another commit than the open one is ignored.
+	 */
+	private TermStatsTable getTermStats() throws IOException {
+		if (!termStatsOpened) {
+			synchronized (this) {
+				if (!termStatsOpened) {
+					TermStatsTable stats = TermStatsTable.open(directory);
+					if (stats != null && !stats.isFor(directory, ireader)) {
+						stats.close();
+						stats = null;
+					}
+					termStats = stats;
+					termStatsOpened = true;
+				}
+			}
+		}
+		return termStats;
+	}
+	
+	static int[] loadDocLengths( IndexReader ireader ) throws IOException {
+		int[] lengths = new int[ireader.maxDoc()];
+		NumericDocValues values = MultiDocValues.getNumericValues(ireader, "LENGTH");
+		if (values != null) {
+			for (int docid = 0; docid < lengths.length; docid++)
+				lengths[docid] = (int) values.get(docid);
+			return lengths;
+		}
+		// Index built before the LENGTH column existed, sum the term vectors one time instead
+		for (int docid = 0; docid < lengths.length; docid++) {
+			Terms vector = ireader.getTermVector( docid, "CONTENT" );
+			if (vector == null)
+				continue;
+			TermsEnum termsEnum = vector.iterator();
+			int doc_length = 0;
+			while (termsEnum.next() != null) {
+				doc_length+= (int) termsEnum.totalTermFreq();
+			}
+			lengths[docid] = doc_length;
 		}
-		return doc_length;
+		return lengths;
 	}
 	
 	public void close() throws IOException {
-		// you should implement this method when necessary
+		if (docnoDict != null)
+			docnoDict.close();
+		if (termStats != null)
+			termStats.close();
 		ireader.close();
 		directory.close();
 	}
@@ -2,40 +2,126 @@ package IndexingLucene;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 
+import Metrics.Meter;
+import Metrics.MetricsRegistry;
+
 
 public class MyIndexWriter {
 	
+	// Marks the end of the queue for the indexing threads
+	private static final String[] END_OF_INPUT = new String[0];
+	// Documents added to any index and their content length, in "indexing.documents" of the global registry
+	private static final Meter THROUGHPUT = MetricsRegistry.global().meter("indexing.documents", "chars");
+	
 	protected File dir;
 	private Directory directory;
 	private IndexWriter ixwriter;
 	private FieldType type;
+	private final IndexingProfile profile;
+	private final IndexBuildReport report;
+	// Parallel mode only: documents waiting for an indexing thread, and the threads
+	private BlockingQueue<String[]> queue;
+	private Thread[] workers;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private final LongAdder indexedCount = new LongAdder();
+	// Serial mode only: feeds a CorpusDocument's content to the analyzer without copying it
+	private final CharSequenceReader contentReader = new CharSequenceReader();
 	
 	public MyIndexWriter( String dataType ) throws IOException {
-		if (dataType.equals("trectext")) {
-			directory = FSDirectory.open(Paths.get(Classes.Path.IndexTextDir));  
-		} else {
-			directory = FSDirectory.open(Paths.get(Classes.Path.IndexWebDir)); 
-		}
+		this(dataType, 0);
+	}
+	
+	/**
+	 * Open the writer in parallel mode when indexingThreads > 0: index() only queues the document and
+	 * returns, indexingThreads threads add the queued documents to the index concurrently. The queue
+	 * is bounded, so index() blocks when the indexing threads fall behind.
+	 * 
+	 * @param dataType
+	 * @param indexingThreads
+	 * @throws IOException
+	 */
+	public MyIndexWriter( String dataType, int indexingThreads ) throws IOException {
+		this(dataType, indexingThreads, IndexingProfile.defaults());
+	}
+	
+	/**
+	 * Open the writer with the flush and merge settings of profile, see {@link IndexingProfile#bulkLoad()}.
+	 * 
+	 * @param dataType
+	 * @param indexingThreads 0 for serial mode
+	 * @param profile
+	 * @throws IOException
+	 */
+	public MyIndexWriter( String dataType, int indexingThreads, IndexingProfile profile ) throws IOException {
+		this(Paths.get(dataType.equals("trectext") ? Classes.Path.IndexTextDir : Classes.Path.IndexWebDir), indexingThreads, profile);
+	}
+	
+	/**
+	 * Open the writer on the index in indexDir rather than the index of a data type.
+	 * 
+	 * @param indexDir
+	 * @param indexingThreads 0 for serial mode
+	 * @param profile
+	 * @throws IOException
+	 */
+	public MyIndexWriter( Path indexDir, int indexingThreads, IndexingProfile profile ) throws IOException {
+		this.profile = profile;
+		this.report = new IndexBuildReport(profile);
+		directory = FSDirectory.open(indexDir);
 		IndexWriterConfig indexConfig=new IndexWriterConfig(new WhitespaceAnalyzer());
-		indexConfig.setMaxBufferedDocs(10000);
+		profile.apply(indexConfig, report);
 		ixwriter = new IndexWriter( directory, indexConfig);
+		report.started(directory);
 		type = new FieldType();
 		type.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
 		type.setStored(false);
-		type.setStoreTermVectors(true);
+		type.setStoreTermVectors(profile.getStoreTermVectors());
+		type.freeze();
+		if (indexingThreads > 0)
+			startWorkers(indexingThreads);
+	}
+	
+	private void startWorkers( int indexingThreads ) {
+		queue = new ArrayBlockingQueue<>(indexingThreads * 256);
+		workers = new Thread[indexingThreads];
+		for (int ix = 0; ix < workers.length; ix++) {
+			workers[ix] = new Thread(() -> {
+				try {
+					String[] doc;
+					while ((doc = queue.take()) != END_OF_INPUT)
+						addDocument(doc[0], doc[1]);
+				} catch (Throwable t) {
+					failure.compareAndSet(null, t);
+					// Unblock the producer, it will see the failure on its next index() call
+					queue.clear();
+				}
+			}, "MyIndexWriter-" + ix);
+			workers[ix].setDaemon(true);
+			workers[ix].start();
+		}
 	}
 	
 	/**
@@ -48,11 +134,108 @@ public class MyIndexWriter {
 	 * @throws IOException
 	 */
 	public void index( String docno, String content) throws IOException {
-		// you should implement this method to build index for each document
+		if (queue == null) {
+			addDocument(docno, content);
+			return;
+		}
+		String[] doc = new String[] { docno, content };
+		try {
+			while (!queue.offer(doc, 100, TimeUnit.MILLISECONDS))
+				checkFailure();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while queueing " + docno);
+		}
+		checkFailure();
+	}
+	
+	/**
+	 * Index the document the corpus reader just read into doc. The content is analyzed straight
+	 * from the reusable buffer of doc, except in parallel mode where it has to be copied for the queue.
+	 * 
+	 * @param doc
+	 * @throws IOException
+	 */
+	public void index( CorpusDocument doc ) throws IOException {
+		if (queue != null) {
+			index(doc.docno().toString(), doc.content().toString());
+			return;
+		}
+		Document document = new Document();
+		document.add(new StoredField("DOCNO", doc.docno().toString()));
+		document.add(new Field("CONTENT", contentReader.reset(doc.content()), type));
+		document.add(new NumericDocValuesField("LENGTH", countTokens(doc.content())));
+		ixwriter.addDocument(document);
+		indexedCount.increment();
+		THROUGHPUT.mark(1, doc.content().length());
+	}
+	
+	private void addDocument( String docno, String content ) throws IOException {
 		Document doc = new Document();
 		doc.add(new StoredField("DOCNO", docno));		
 		doc.add(new Field("CONTENT", content, type));
+		doc.add(new NumericDocValuesField("LENGTH", countTokens(content)));
 		ixwriter.addDocument(doc);
+		indexedCount.increment();
+		THROUGHPUT.mark(1, content.length());
+	}
+	
+	/**
+	 * Number of documents added to the index so far (not counting queued ones).
+	 * 
+	 * @return
+	 */
+	public long getIndexedCount() {
+		return indexedCount.sum();
+	}
+	
+	/**
+	 * Flushes, merges and the final segments of the build, complete once close() returns.
+	 * 
+	 * @return
+	 */
+	public IndexBuildReport getBuildReport() {
+		return report;
+	}
+	
+	private void checkFailure() throws IOException {
+		Throwable t = failure.get();
+		if (t == null)
+			return;
+		if (t instanceof IOException)
+			throw new IOException("Indexing thread failed", t);
+		throw new RuntimeException("Indexing thread failed", t);
+	}
+	
+	/**
+	 * Count the tokens WhitespaceAnalyzer will produce for the content, so the document length
+	 * can be stored next to the document instead of being summed from its term vector at query time.
+	 * Like CharTokenizer, a token longer than 255 chars is cut into several tokens.
+	 * 
+	 * @param content
+	 * @return
+	 */
+	static int countTokens( CharSequence content ) {
+		int count = 0;
+		int length = 0;
+		for (int ix = 0; ix < content.length(); ) {
+			int c = Character.codePointAt(content, ix);
+			ix += Character.charCount(c);
+			if (Character.isWhitespace(c)) {
+				if (length > 0)
+					count++;
+				length = 0;
+			} else {
+				length += Character.charCount(c);
+				if (length >= 255) {
+					count++;
+					length = 0;
+				}
+			}
+		}
+		if (length > 0)
+			count++;
+		return count;
 	}
 	
 	/**
@@ -60,9 +243,98 @@ public class MyIndexWriter {
 	 * @throws IOException
 	 */
 	public void close() throws IOException {
-		// you should implement this method if necessary
+		if (workers != null) {
+			// Let the indexing threads drain the queue and stop
+			try {
+				for (Thread worker : workers) {
+					while (failure.get() == null && !queue.offer(END_OF_INPUT, 100, TimeUnit.MILLISECONDS)) {
+						// wait for room in the queue
+					}
+				}
+				// A failed run leaves the other threads waiting on an empty queue
+				if (failure.get() != null)
+					for (Thread worker : workers)
+						worker.interrupt();
+				for (Thread worker : workers)
+					worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				ixwriter.rollback();
+				directory.close();
+				throw new InterruptedIOException("Interrupted while closing the index");
+			}
+			if (failure.get() != null) {
+				ixwriter.rollback();
+				directory.close();
+				checkFailure();
+			}
+		}
+		if (profile.getForceMergeSegments() > 0) {
+			long start = System.nanoTime();
+			ixwriter.forceMerge(profile.getForceMergeSegments());
+			report.forceMergeDone(System.nanoTime() - start);
+		}
 		ixwriter.close();
+		// docids are final once the writer is closed, so the dictionaries are built now
+		try (DirectoryReader ireader = DirectoryReader.open(directory)) {
+			DocnoDictionary.write(directory, ireader);
+			TermStatsTable.write(directory, ireader);
+		}
+		report.finish(directory);
 		directory.close();
 	}
 	
+	/**
+	 * Give up the build after a failure: stop the indexing threads, discard what was not committed
+	 * and release the index lock so the next run can open the index. Safe to call after close().
+	 * 
+	 * @throws IOException
+	 */
+	public void abort() throws IOException {
+		if (workers != null) {
+			for (Thread worker : workers)
+				worker.interrupt();
+			try {
+				for (Thread worker : workers)
+					worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		try {
+			ixwriter.rollback();
+		} finally {
+			directory.close();
+		}
+	}
+	
+	/**
+	 * A Reader over a CharSequence that can be pointed at the next one.
+	 */
+	private static class CharSequenceReader extends Reader {
+		private CharSequence text;
+		private int pos;
+		
+		CharSequenceReader reset( CharSequence text ) {
+			this.text = text;
+			this.pos = 0;
+			return this;
+		}
+		
+		@Override
+		public int read( char[] cbuf, int off, int len ) {
+			if (pos >= text.length())
+				return -1;
+			int count = Math.min(len, text.length() - pos);
+			for (int ix = 0; ix < count; ix++)
+				cbuf[off + ix] = text.charAt(pos++);
+			return count;
+		}
+		
+		@Override
+		public void close() {
+			// nothing to release, the reader is reused for the next document
+		}
+	}
+	
 }
@@ -0,0 +1,111 @@
+package IndexingLucene;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build the index of a corpus with a parallel MyIndexWriter.
+ * 
+ * The calling thread reads the corpus and feeds the writer's bounded queue, the writer's threads
+ * do the indexing. Progress is reported as docs/sec every few seconds.
+ * 
+ * Usage: ParallelIngest [trectext|trecweb] [indexing threads] [default|bulk] [compact]
+ * 
+ * The bulk profile flushes by RAM and force merges at close, see {@link IndexingProfile#bulkLoad()}.
+ * compact builds the index without term vectors.
+ * The build report is printed at the end.
+ */
+public class ParallelIngest {
+
+	public static void main(String[] args) throws Exception {
+		String dataType = args.length > 0 ? args[0] : "trectext";
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		IndexingProfile profile = args.length > 2 && args[2].equals("bulk") ? IndexingProfile.bulkLoad() : IndexingProfile.defaults();
+		if (args.length > 3 && args[3].equals("compact"))
+			profile.setStoreTermVectors(false);
+		long startTime = System.currentTimeMillis();
+		MyIndexWriter output = new MyIndexWriter(dataType, threads, profile);
+		long count = run(dataType, output, 10);
+		long endTime = System.currentTimeMillis();
+		System.out.println("totaly document count:  " + count);
+		System.out.println("index " + dataType + " corpus running time: " + (endTime - startTime) / 60000.0 + " min");
+		System.out.println(output.getBuildReport());
+	}
+
+	/**
+	 * Index the whole corpus of dataType.
+	 * 
+	 * @param dataType
+	 * @param threads number of indexing threads
+	 * @param reportSeconds seconds between progress lines, 0 for none
+	 * @return number of documents indexed
+	 * @throws Exception
+	 */
+	public static long run(String dataType, int threads, int reportSeconds) throws Exception {
+		return run(dataType, new MyIndexWriter(dataType, threads), reportSeconds);
+	}
+
+	/**
+	 * Index the whole corpus of dataType with an already opened writer, which is closed at the end,
+	 * or aborted if indexing fails so the index is left unlocked.
+	 * 
+	 * @param dataType
+	 * @param output
+	 * @param reportSeconds seconds between progress lines, 0 for none
+	 * @return number of documents indexed
+	 * @throws Exception
+	 */
+	public static long run(String dataType, MyIndexWriter output, int reportSeconds) throws Exception {
+		PreProcessedCorpusReader corpus;
+		try {
+			corpus = new PreProcessedCorpusReader(dataType);
+		} catch (Throwable t) {
+			abort(output, t);
+			throw t;
+		}
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "ParallelIngest-progress");
+			t.setDaemon(true);
+			return t;
+		});
+		if (reportSeconds > 0) {
+			final long start = System.nanoTime();
+			final long[] last = { start, 0 };
+			reporter.scheduleAtFixedRate(() -> {
+				long now = System.nanoTime();
+				long count = output.getIndexedCount();
+				double recent = (count - last[1]) / ((now - last[0]) / 1e9);
+				double overall = count / ((now - start) / 1e9);
+				System.out.println(String.format("indexed %d docs, %.0f docs/sec (%.0f docs/sec overall)", count, recent, overall));
+				last[0] = now;
+				last[1] = count;
+			}, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+		}
+		try {
+			CorpusDocument doc = new CorpusDocument();
+			while (corpus.nextDocument(doc))
+				output.index(doc);
+			output.close();
+		} catch (Throwable t) {
+			abort(output, t);
+			throw t;
+		} finally {
+			reporter.shutdownNow();
+			corpus.close();
+		}
+		return output.getIndexedCount();
+	}
+
+	/**
+	 * Abort output after failure, keeping failure as the error to report.
+	 */
+	private static void abort(MyIndexWriter output, Throwable failure) {
+		try {
+			output.abort();
+		} catch (Throwable t) {
+			failure.addSuppressed(t);
+		}
+	}
+
+}
@@ -1,43 +1,171 @@
 package IndexingLucene;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 
 import Classes.Path;
+import Metrics.Meter;
+import Metrics.MetricsRegistry;
 
 public class PreProcessedCorpusReader {
 	
+	// Bytes read from the file per system call, and chars decoded per refill
+	private static final int BYTE_BUFFER_SIZE = 1 << 22;
+	private static final int CHAR_BUFFER_SIZE = 1 << 20;
+	// Documents read by every reader and the bytes read from their files, in "corpus.documents" of the global registry
+	private static final Meter THROUGHPUT = MetricsRegistry.global().meter("corpus.documents", "bytes");
 
-	private BufferedReader br;
-	private FileInputStream instream_collection;
-	private InputStreamReader is;
+	private FileChannel channel;
+	private final ByteBuffer bytes;
+	private final CharBuffer chars;
+	private final CharsetDecoder decoder;
+	private boolean inputDone;
+	private boolean decoderFlushed;
+	// The last line ended with '\r', drop a '\n' right after it
+	private boolean skipLF;
+	private final CorpusDocument current = new CorpusDocument();
+	
 	public PreProcessedCorpusReader(String type) throws IOException {
 		// This constructor should open the file in Path.DataTextDir
 		// and also should make preparation for function nextDocument()
 		// remember to close the file that you opened, when you do not use it any more
-		instream_collection = new FileInputStream(Path.ResultHM1+type);
-		is = new InputStreamReader(instream_collection);
-        br = new BufferedReader(is);   
+		this(Paths.get(Path.ResultHM1+type));
+	}
+	
+	/**
+	 * Read the corpus in file instead of the one of a data type.
+	 */
+	public PreProcessedCorpusReader(java.nio.file.Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+		bytes.flip();
+		chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+		chars.flip();
+		decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
 	}
 	
 
+	/**
+	 * Read the next document as a {docno: content} map, kept for existing callers.
+	 * nextDocument(CorpusDocument) avoids the per-document map and strings.
+	 */
 	public Map<String, String> nextDocument() throws IOException {
-		String docno=br.readLine();
-		if(docno==null) {
-			instream_collection.close();
-			is.close();
-			br.close();
+		if (!nextDocument(current))
 			return null;
-		}
-		String content =br.readLine();
 		Map<String, String> doc = new HashMap<String, String>();
-		doc.put(docno, content);
+		doc.put(current.docno().toString(), current.content().toString());
 		return doc;
 	}
+	
+	/**
+	 * Read the next document into doc, overwriting what it held.
+	 * The file is closed once the end is reached.
+	 * 
+	 * @param doc
+	 * @return false at the end of the corpus
+	 * @throws IOException
+	 */
+	public boolean nextDocument(CorpusDocument doc) throws IOException {
+		doc.clear();
+		if (channel == null || !readLine(doc, true)) {
+			close();
+			return false;
+		}
+		readLine(doc, false);
+		THROUGHPUT.mark(1, 0);
+		return true;
+	}
+	
+	/**
+	 * Close the file before the end of the corpus is reached.
+	 */
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+	}
+	
+	/**
+	 * Append the next line (without its terminator) to the docno or content of doc.
+	 * 
+	 * @return false if there was no more line
+	 */
+	private boolean readLine(CorpusDocument doc, boolean toDocno) throws IOException {
+		boolean readAny = false;
+		while (true) {
+			if (!chars.hasRemaining() && !fill())
+				return readAny;
+			char[] buffer = chars.array();
+			int start = chars.arrayOffset() + chars.position();
+			int end = chars.arrayOffset() + chars.limit();
+			if (skipLF) {
+				skipLF = false;
+				if (buffer[start] == '\n') {
+					chars.position(chars.position() + 1);
+					continue;
+				}
+			}
+			readAny = true;
+			int ix = start;
+			while (ix < end && buffer[ix] != '\n' && buffer[ix] != '\r')
+				ix++;
+			if (toDocno)
+				doc.appendDocno(buffer, start, ix - start);
+			else
+				doc.appendContent(buffer, start, ix - start);
+			if (ix < end) {
+				skipLF = buffer[ix] == '\r';
+				chars.position(ix + 1 - chars.arrayOffset());
+				return true;
+			}
+			chars.position(end - chars.arrayOffset());
+		}
+	}
+	
+	/**
+	 * Decode the next chunk of the file into chars.
+	 * 
+	 * @return false at the end of the file
+	 */
+	private boolean fill() throws IOException {
+		if (decoderFlushed)
+			return false;
+		chars.clear();
+		while (true) {
+			if (!inputDone) {
+				bytes.compact();
+				int read = channel.read(bytes);
+				inputDone = read < 0;
+				if (read > 0)
+					THROUGHPUT.mark(0, read);
+				bytes.flip();
+			}
+			CoderResult result = decoder.decode(bytes, chars, inputDone);
+			if (result.isError())
+				result.throwException();
+			// Flush only once every byte is decoded, a full chars buffer stops decoding early
+			if (inputDone && result.isUnderflow()) {
+				decoder.flush(chars);
+				decoderFlushed = true;
+			}
+			if (chars.position() > 0 || decoderFlushed)
+				break;
+		}
+		chars.flip();
+		return chars.hasRemaining();
+	}
 
 }
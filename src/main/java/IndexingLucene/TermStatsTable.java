@@ -0,0 +1,229 @@
+package IndexingLucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Per-term statistics of the CONTENT field, kept next to the Lucene segments.
+ *
+ * For every term in sorted order the file holds df, cf, the largest tf in any one document and the
+ * length of the shortest document containing the term. The last two give score upper bounds for
+ * dynamic pruning. Terms are found by binary search over the memory-mapped file. It is built once
+ * when MyIndexWriter closes, and records the id and generation of the commit it was built from so a
+ * reader can tell whether it still describes the index.
+ */
+public class TermStatsTable implements Closeable {
+
+	public static final String FILE_NAME = "termstats.dict";
+	private static final String CODEC = "TermStatsTable";
+	// Version 0 did not record its commit, such a table never matches
+	private static final int VERSION_START = 0;
+	private static final int VERSION_COMMIT = 1;
+	private static final int VERSION = VERSION_COMMIT;
+	// int df, long cf, int maxTf, int minDocLength
+	private static final int ENTRY_BYTES = 20;
+
+	private final IndexInput input;
+	private final int size;
+	private final long totalLength;
+	private final int docCount;
+	// The commit the table was built from, null for version 0
+	private final CommitStamp commit;
+	// offsets: long[size + 1], stats: ENTRY_BYTES * size, blob: the term bytes
+	private final ByteStringTable terms;
+	private final RandomAccessInput stats;
+
+	private TermStatsTable( IndexInput input ) throws IOException {
+		this.input = input;
+		int version = CodecUtil.checkHeader(input, CODEC, VERSION_START, VERSION);
+		size = input.readInt();
+		long blobLength = input.readLong();
+		totalLength = input.readLong();
+		docCount = input.readInt();
+		commit = version >= VERSION_COMMIT ? CommitStamp.read(input) : null;
+		long start = input.getFilePointer();
+		RandomAccessInput offsets = input.randomAccessSlice(start, 8L * (size + 1));
+		start += 8L * (size + 1);
+		stats = input.randomAccessSlice(start, (long) ENTRY_BYTES * size);
+		start += (long) ENTRY_BYTES * size;
+		terms = new ByteStringTable(offsets, input.randomAccessSlice(start, blobLength));
+	}
+
+	/**
+	 * Open the statistics of the index in the directory.
+	 *
+	 * @param directory
+	 * @return null if the index was built without them
+	 * @throws IOException
+	 */
+	public static TermStatsTable open( Directory directory ) throws IOException {
+		if (!Arrays.asList(directory.listAll()).contains(FILE_NAME))
+			return null;
+		return new TermStatsTable(directory.openInput(FILE_NAME, IOContext.READ));
+	}
+
+	/**
+	 * Collect the statistics of every CONTENT term of the committed index, replacing any
+	 * table written for an earlier commit.
+	 *
+	 * @param directory
+	 * @param ireader a reader on the last commit in the directory
+	 * @throws IOException
+	 */
+	public static void write( Directory directory, DirectoryReader ireader ) throws IOException {
+		CommitStamp commit = CommitStamp.of(directory, ireader);
+		int[] docLengths = MyIndexReader.loadDocLengths(ireader);
+		Bits liveDocs = MultiFields.getLiveDocs(ireader);
+		List<BytesRef> termList = new ArrayList<>();
+		List<long[]> statList = new ArrayList<>();
+		long totalLength = 0;
+		Terms contentTerms = MultiFields.getTerms(ireader, "CONTENT");
+		if (contentTerms != null) {
+			TermsEnum termsEnum = contentTerms.iterator();
+			PostingsEnum postings = null;
+			BytesRef term;
+			while ((term = termsEnum.next()) != null) {
+				postings = termsEnum.postings(postings, PostingsEnum.FREQS);
+				long df = 0, cf = 0, maxTf = 0, minDocLength = Integer.MAX_VALUE;
+				int doc;
+				while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+					if (liveDocs != null && !liveDocs.get(doc))
+						continue;
+					int tf = postings.freq();
+					df++;
+					cf += tf;
+					maxTf = Math.max(maxTf, tf);
+					minDocLength = Math.min(minDocLength, docLengths[doc]);
+				}
+				if (df == 0)
+					continue;
+				totalLength += cf;
+				termList.add(BytesRef.deepCopyOf(term));
+				statList.add(new long[] { df, cf, maxTf, minDocLength });
+			}
+		}
+		BytesRef[] termArray = termList.toArray(new BytesRef[0]);
+
+		if (Arrays.asList(directory.listAll()).contains(FILE_NAME))
+			directory.deleteFile(FILE_NAME);
+		try (IndexOutput output = directory.createOutput(FILE_NAME, IOContext.DEFAULT)) {
+			CodecUtil.writeHeader(output, CODEC, VERSION);
+			output.writeInt(termArray.length);
+			output.writeLong(ByteStringTable.blobLength(termArray, termArray.length));
+			output.writeLong(totalLength);
+			output.writeInt(ireader.numDocs());
+			commit.write(output);
+			ByteStringTable.writeOffsets(output, termArray, termArray.length);
+			for (long[] stat : statList) {
+				output.writeInt((int) stat[0]);
+				output.writeLong(stat[1]);
+				output.writeInt((int) stat[2]);
+				output.writeInt((int) stat[3]);
+			}
+			ByteStringTable.writeBlob(output, termArray, termArray.length);
+			CodecUtil.writeFooter(output);
+		}
+	}
+
+	/**
+	 * Whether the table was built from the commit ireader is open on. Any other commit, even one with
+	 * the same number of documents, may have other statistics.
+	 *
+	 * @param directory
+	 * @param ireader
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean isFor( Directory directory, DirectoryReader ireader ) throws IOException {
+		return commit != null && commit.matches(directory, ireader);
+	}
+
+	/**
+	 * Number of distinct terms.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sum of the lengths of all documents.
+	 */
+	public long getTotalLength() {
+		return totalLength;
+	}
+
+	/**
+	 * Number of (live) documents.
+	 */
+	public int getDocCount() {
+		return docCount;
+	}
+
+	/**
+	 * Find the ordinal of the token by binary search.
+	 *
+	 * @param token
+	 * @return -1 if the token is not in the index
+	 * @throws IOException
+	 */
+	public int find( String token ) throws IOException {
+		byte[] key = token.getBytes(StandardCharsets.UTF_8);
+		int low = 0, high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = terms.compare(mid, key);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	public String term( int ord ) throws IOException {
+		return terms.get(ord);
+	}
+
+	public int docFreq( int ord ) throws IOException {
+		return stats.readInt((long) ENTRY_BYTES * ord);
+	}
+
+	public long collectionFreq( int ord ) throws IOException {
+		return stats.readLong((long) ENTRY_BYTES * ord + 4);
+	}
+
+	public int maxTermFreq( int ord ) throws IOException {
+		return stats.readInt((long) ENTRY_BYTES * ord + 12);
+	}
+
+	public int minDocLength( int ord ) throws IOException {
+		return stats.readInt((long) ENTRY_BYTES * ord + 16);
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+
+}
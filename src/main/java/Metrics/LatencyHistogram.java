@@ -0,0 +1,153 @@
+package Metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds with log-linear buckets, in the manner of HdrHistogram.
+ * <p>
+ * Every power of two is split into 32 equal buckets, so a recorded value is known to within about 3%
+ * from 1 ns up to an hour (longer values count in the last bucket) with a fixed array of about 1300
+ * counters. Recording is a few shifts and an atomic increment, without allocation or locks, and can
+ * happen on any number of threads while others read percentiles.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    // 2^SUB_BITS buckets per power of two
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // Largest value with its own bucket, about 73 minutes in nanoseconds
+    private static final long MAX_VALUE = (1L << 42) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Bucket of a value: values below 2 * SUB_COUNT have their own bucket, above that each power of two
+     * has SUB_COUNT buckets
+     */
+    private static int index(long value) {
+        int magnitude = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return (magnitude << SUB_BITS) + (int) (value >>> magnitude);
+    }
+
+    /**
+     * Largest value that falls in bucket i
+     */
+    private static long highestValue(int i) {
+        if (i < 2 * SUB_COUNT) return i;
+        int magnitude = (i >>> SUB_BITS) - 1;
+        long sub = i - ((long) magnitude << SUB_BITS);
+        return ((sub + 1) << magnitude) - 1;
+    }
+
+    /**
+     * Record one duration, negative ones count as 0 and ones beyond the range as the largest value
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(index(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Record the time since startNanos, a System.nanoTime() value, and return the current nanoTime so
+     * consecutive phases can be timed with one call each
+     */
+    public long recordSince(long startNanos) {
+        long now = System.nanoTime();
+        record(now - startNanos);
+        return now;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : total.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentileMicros(50);
+    }
+
+    @Override
+    public double getP90Micros() {
+        return percentileMicros(90);
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentileMicros(99);
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentileMicros(99.9);
+    }
+
+    /**
+     * The value below which the given percentage of the recorded values fall, in microseconds,
+     * accurate to the bucket width
+     */
+    public double percentileMicros(double percentile) {
+        return percentile(percentile) / 1000.0;
+    }
+
+    /**
+     * The value below which the given percentage of the recorded values fall, in nanoseconds
+     */
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += snapshot[i] = counts.get(i);
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(highestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+                name, getCount(), getMeanMicros(), getP50Micros(), getP90Micros(), getP99Micros(), getMaxMicros());
+    }
+
+}
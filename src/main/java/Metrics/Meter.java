@@ -0,0 +1,91 @@
+package Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of a stream of events that each carry some units, e.g. documents and their bytes.
+ * <p>
+ * Rates are taken over the active period, from the first mark to the last, so a meter read long after its
+ * work finished still reports how fast the work went.
+ */
+public class Meter implements MeterMBean {
+
+    private final String name;
+    private final String unit;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder units = new LongAdder();
+    // System.nanoTime() of the first and the last mark, firstNanos is 0 before the first mark
+    private final AtomicLong firstNanos = new AtomicLong();
+    private final LongAccumulator lastNanos = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    /**
+     * @param unit what the units are, e.g. "bytes"
+     */
+    public Meter(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    /**
+     * Record events and the units they carried, either may be 0
+     */
+    public void mark(long events, long units) {
+        long now = System.nanoTime();
+        if (firstNanos.get() == 0) firstNanos.compareAndSet(0, now);
+        count.add(events);
+        this.units.add(units);
+        lastNanos.accumulate(now);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getUnit() {
+        return unit;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getUnits() {
+        return units.sum();
+    }
+
+    @Override
+    public double getCountPerSecond() {
+        return perSecond(count.sum());
+    }
+
+    @Override
+    public double getUnitsPerSecond() {
+        return perSecond(units.sum());
+    }
+
+    private double perSecond(long value) {
+        long first = firstNanos.get();
+        long elapsed = lastNanos.get() - first;
+        return first == 0 || elapsed <= 0 ? 0 : value * 1e9 / elapsed;
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        units.reset();
+        firstNanos.set(0);
+        lastNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s count=%d (%.1f/s) %s=%d (%.1f/s)",
+                name, getCount(), getCountPerSecond(), unit, getUnits(), getUnitsPerSecond());
+    }
+
+}
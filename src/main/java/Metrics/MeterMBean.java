@@ -0,0 +1,20 @@
+package Metrics;
+
+/**
+ * JMX view of a Meter
+ */
+public interface MeterMBean {
+
+    String getUnit();
+
+    long getCount();
+
+    long getUnits();
+
+    double getCountPerSecond();
+
+    double getUnitsPerSecond();
+
+    void reset();
+
+}
@@ -0,0 +1,216 @@
+package Metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named latency histograms and throughput meters, created on first use and kept for the life of the JVM.
+ * <p>
+ * The metrics can be read in-process, published as MBeans (domain "Metrics", one per metric) and dumped as JSON
+ * to a file every few seconds. The global registry, the one the indexing and retrieval code records into, sets
+ * these up from system properties:
+ * <ul>
+ * <li>-DMetricsRegistry.jmx=true registers every metric with the platform MBean server</li>
+ * <li>-DMetricsRegistry.jsonFile=metrics.json rewrites the file every -DMetricsRegistry.jsonSeconds=10 seconds
+ * and once more when the JVM exits</li>
+ * </ul>
+ */
+public class MetricsRegistry {
+
+    public static final String JMX_DOMAIN = "Metrics";
+
+    private static final MetricsRegistry GLOBAL = createGlobal();
+
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Meter> meters = new ConcurrentHashMap<>();
+    private volatile boolean jmxEnabled;
+
+    /**
+     * The registry of the indexing and retrieval code
+     */
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    private static MetricsRegistry createGlobal() {
+        MetricsRegistry registry = new MetricsRegistry();
+        if (Boolean.getBoolean("MetricsRegistry.jmx")) registry.enableJmx();
+        String jsonFile = System.getProperty("MetricsRegistry.jsonFile");
+        if (jsonFile != null && !jsonFile.isEmpty()) {
+            long seconds = Long.getLong("MetricsRegistry.jsonSeconds", 10);
+            Closeable dump = registry.startJsonDump(Paths.get(jsonFile), seconds);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    dump.close();
+                } catch (IOException e) {
+                    System.err.println("[WARN] Metrics not written to " + jsonFile + ": " + e.getMessage());
+                }
+            }, "MetricsRegistry-shutdown"));
+        }
+        return registry;
+    }
+
+    /**
+     * The latency histogram of the given name, created if there is none yet
+     */
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram != null) return histogram;
+        return histograms.computeIfAbsent(name, n -> register(new LatencyHistogram(n), "LatencyHistogram", n));
+    }
+
+    /**
+     * The meter of the given name, created with unit if there is none yet
+     */
+    public Meter meter(String name, String unit) {
+        Meter meter = meters.get(name);
+        if (meter != null) return meter;
+        return meters.computeIfAbsent(name, n -> register(new Meter(n, unit), "Meter", n));
+    }
+
+    /**
+     * Every histogram by name
+     */
+    public Map<String, LatencyHistogram> histograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(histograms));
+    }
+
+    /**
+     * Every meter by name
+     */
+    public Map<String, Meter> meters() {
+        return Collections.unmodifiableMap(new TreeMap<>(meters));
+    }
+
+    /**
+     * Clear the values of every metric, the metrics stay registered
+     */
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+        meters.values().forEach(Meter::reset);
+    }
+
+    /**
+     * Publish every metric, present and future, as an MBean named Metrics:type=...,name=...
+     */
+    public synchronized void enableJmx() {
+        if (jmxEnabled) return;
+        jmxEnabled = true;
+        histograms.forEach((name, histogram) -> register(histogram, "LatencyHistogram", name));
+        meters.forEach((name, meter) -> register(meter, "Meter", name));
+    }
+
+    private <T> T register(T metric, String type, String name) {
+        if (!jmxEnabled) return metric;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) server.registerMBean(metric, objectName);
+        } catch (JMException e) {
+            System.err.println("[WARN] Metric " + name + " not published to JMX: " + e.getMessage());
+        }
+        return metric;
+    }
+
+    /**
+     * Rewrite file with the JSON of the registry every periodSeconds, from a daemon thread. Closing the returned
+     * handle stops the dump and writes the file a last time.
+     */
+    public Closeable startJsonDump(Path file, long periodSeconds) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MetricsRegistry-json");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            try {
+                writeJson(file);
+            } catch (IOException e) {
+                System.err.println("[WARN] Metrics not written to " + file + ": " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        return () -> {
+            executor.shutdownNow();
+            writeJson(file);
+        };
+    }
+
+    /**
+     * Write the JSON of the registry to file, replacing it in one move so readers never see half a file
+     */
+    public void writeJson(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        Files.write(temp, toJson().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Every metric as one JSON object: {"timestamp": ms, "histograms": {name: {...}}, "meters": {name: {...}}},
+     * latencies in microseconds
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n  \"histograms\": {");
+        String separator = "\n";
+        for (LatencyHistogram h : histograms().values()) {
+            sb.append(separator).append("    ").append(quote(h.getName())).append(": {")
+                    .append("\"count\": ").append(h.getCount())
+                    .append(", \"meanMicros\": ").append(number(h.getMeanMicros()))
+                    .append(", \"p50Micros\": ").append(number(h.getP50Micros()))
+                    .append(", \"p90Micros\": ").append(number(h.getP90Micros()))
+                    .append(", \"p99Micros\": ").append(number(h.getP99Micros()))
+                    .append(", \"p999Micros\": ").append(number(h.getP999Micros()))
+                    .append(", \"maxMicros\": ").append(number(h.getMaxMicros()))
+                    .append('}');
+            separator = ",\n";
+        }
+        sb.append("\n  },\n  \"meters\": {");
+        separator = "\n";
+        for (Meter m : meters().values()) {
+            sb.append(separator).append("    ").append(quote(m.getName())).append(": {")
+                    .append("\"unit\": ").append(quote(m.getUnit()))
+                    .append(", \"count\": ").append(m.getCount())
+                    .append(", \"units\": ").append(m.getUnits())
+                    .append(", \"countPerSecond\": ").append(number(m.getCountPerSecond()))
+                    .append(", \"unitsPerSecond\": ").append(number(m.getUnitsPerSecond()))
+                    .append('}');
+            separator = ",\n";
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+}
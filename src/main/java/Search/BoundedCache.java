@@ -0,0 +1,248 @@
+package Search;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe LRU cache bounded by an estimate of the memory its entries use.
+ * <p>
+ * Keys are spread over a fixed number of segments, each an access-ordered LinkedHashMap behind its own lock,
+ * so concurrent readers rarely contend. The byte budget is shared: a put evicts the least recently used
+ * entries of its own segment first, then of the other segments, until the whole cache fits again, so a
+ * single entry may use up to the whole budget. Values are loaded outside the lock, two threads missing on
+ * the same key may both load it and the last one wins. An entry bigger than the whole budget is returned
+ * but not kept, and counted in rejections().
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Produce the value of a key on a miss
+     */
+    public interface Loader<K, V> {
+        V load(K key) throws IOException;
+    }
+
+    private static final int SEGMENTS = 16;
+    // Rough cost of a LinkedHashMap entry with its references
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private final long maxBytes;
+    private final ToLongFunction<K> keyWeigher;
+    private final ToLongFunction<V> valueWeigher;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    // Estimated bytes of all the entries, kept by the segments under their own locks
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * @param maxBytes     memory budget over all entries
+     * @param keyWeigher   estimated bytes of a key
+     * @param valueWeigher estimated bytes of a value
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BoundedCache(long maxBytes, ToLongFunction<K> keyWeigher, ToLongFunction<V> valueWeigher) {
+        this.maxBytes = maxBytes;
+        this.keyWeigher = keyWeigher;
+        this.valueWeigher = valueWeigher;
+        this.segments = new BoundedCache.Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) this.segments[i] = new Segment(i);
+    }
+
+    /**
+     * Estimated bytes of a String key
+     */
+    public static long stringBytes(String s) {
+        return 40 + 2L * s.length();
+    }
+
+    /**
+     * Cached value of key, loaded (and cached if it fits) on a miss
+     */
+    public V get(K key, Loader<K, V> loader) throws IOException {
+        Segment segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.map.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = loader.load(key);
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * Whether key is cached, without counting a hit or miss or refreshing its recency
+     */
+    public boolean contains(K key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.map.containsKey(key);
+        }
+    }
+
+    /**
+     * Cached value of key, or null
+     */
+    public V getIfPresent(K key) {
+        Segment segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.map.get(key);
+        }
+        if (value != null) hits.increment();
+        else misses.increment();
+        return value;
+    }
+
+    public void put(K key, V value) {
+        if (value == null) return;
+        long weight = weigh(key, value);
+        if (weight > maxBytes) {
+            rejections.increment();
+            return;
+        }
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            V old = segment.map.put(key, value);
+            long delta = old != null ? weight - weigh(key, old) : weight;
+            segment.bytes += delta;
+            bytes.addAndGet(delta);
+            evict(segment, key);
+        }
+        // The own segment did not hold enough, take from the others one lock at a time
+        int start = segment.index;
+        for (int i = 1; i < SEGMENTS && bytes.get() > maxBytes; i++) {
+            Segment other = segments[(start + i) & (SEGMENTS - 1)];
+            synchronized (other) {
+                evict(other, key);
+            }
+        }
+    }
+
+    /**
+     * Drop key if it still maps to value, so a value replaced in the meantime is kept
+     *
+     * @return whether value was dropped
+     */
+    public boolean remove(K key, V value) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            if (value == null || segment.map.get(key) != value) return false;
+            segment.map.remove(key);
+            long weight = weigh(key, value);
+            segment.bytes -= weight;
+            bytes.addAndGet(-weight);
+            return true;
+        }
+    }
+
+    /**
+     * Evict the least recently used entries of segment, but not keep, until the cache fits its budget.
+     * The caller holds the segment lock.
+     */
+    private void evict(Segment segment, K keep) {
+        Iterator<Map.Entry<K, V>> it = segment.map.entrySet().iterator();
+        while (bytes.get() > maxBytes && it.hasNext()) {
+            Map.Entry<K, V> eldest = it.next();
+            if (eldest.getKey().equals(keep)) continue;
+            long weight = weigh(eldest.getKey(), eldest.getValue());
+            segment.bytes -= weight;
+            bytes.addAndGet(-weight);
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.map.clear();
+                bytes.addAndGet(-segment.bytes);
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Number of values not cached because they alone exceed the byte budget
+     */
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * Number of cached entries
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimated memory used by the cached entries, in bytes
+     */
+    public long memoryBytes() {
+        return bytes.get();
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entries=%d bytes=%d/%d hits=%d misses=%d evictions=%d rejections=%d",
+                size(), memoryBytes(), maxBytes, hits(), misses(), evictions(), rejections());
+    }
+
+    private long weigh(K key, V value) {
+        return ENTRY_OVERHEAD + keyWeigher.applyAsLong(key) + valueWeigher.applyAsLong(value);
+    }
+
+    private Segment segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    private class Segment {
+        final int index;
+        final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+        // Estimated bytes of the entries of this segment
+        long bytes;
+
+        Segment(int index) {
+            this.index = index;
+        }
+    }
+
+}
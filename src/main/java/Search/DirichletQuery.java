@@ -0,0 +1,113 @@
+package Search;
+
+import IndexingLucene.MyIndexReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.FilterScorer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Adds the length part of the Dirichlet score, {@link DirichletSimilarity#lengthScore(int, int)} of the
+ * known query tokens, to every document the term disjunction matches. Only the matching documents are
+ * visited, and the sum is rounded to float once.
+ * <p>
+ * The length part is not a term part, a document gets it for every known query token whether it contains
+ * the token or not, so it cannot come out of a per-term SimScorer.
+ */
+class DirichletQuery extends Query {
+
+    private final Query terms;
+    private final MyIndexReader indexReader;
+    private final DirichletSimilarity similarity;
+    private final int knownTokens;
+
+    DirichletQuery(Query terms, MyIndexReader indexReader, DirichletSimilarity similarity, int knownTokens) {
+        this.terms = terms;
+        this.indexReader = indexReader;
+        this.similarity = similarity;
+        this.knownTokens = knownTokens;
+    }
+
+    private double lengthScore(int docid) throws IOException {
+        return this.similarity.lengthScore(this.knownTokens, this.indexReader.docLength(docid));
+    }
+
+    @Override
+    public Query rewrite(IndexReader reader) throws IOException {
+        Query rewritten = this.terms.rewrite(reader);
+        return rewritten == this.terms ? this
+                : new DirichletQuery(rewritten, this.indexReader, this.similarity, this.knownTokens);
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+        final Weight termsWeight = searcher.createWeight(this.terms, needsScores);
+        return new Weight(this) {
+            @Override
+            public void extractTerms(Set<Term> terms) {
+                termsWeight.extractTerms(terms);
+            }
+
+            @Override
+            public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+                Explanation matched = termsWeight.explain(context, doc);
+                if (!matched.isMatch()) return matched;
+                int docid = context.docBase + doc;
+                Explanation length = Explanation.match((float) lengthScore(docid),
+                        String.format("%d * log(mu / (|D|=%d + mu))", knownTokens, indexReader.docLength(docid)));
+                return Explanation.match((float) (matched.getValue() + lengthScore(docid)), "sum of:", matched, length);
+            }
+
+            @Override
+            public float getValueForNormalization() throws IOException {
+                return termsWeight.getValueForNormalization();
+            }
+
+            @Override
+            public void normalize(float norm, float boost) {
+                termsWeight.normalize(norm, boost);
+            }
+
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                Scorer matched = termsWeight.scorer(context);
+                if (matched == null) return null;
+                final int docBase = context.docBase;
+                return new FilterScorer(matched, this) {
+                    @Override
+                    public float score() throws IOException {
+                        return (float) (in.score() + lengthScore(docBase + docID()));
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public String toString(String field) {
+        return "Dirichlet(" + terms.toString(field) + ", knownTokens=" + knownTokens + ", " + similarity + ")";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!sameClassAs(other)) return false;
+        DirichletQuery that = (DirichletQuery) other;
+        return terms.equals(that.terms) && indexReader == that.indexReader && similarity == that.similarity
+                && knownTokens == that.knownTokens;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * classHash() + Objects.hashCode(terms)) + knownTokens;
+    }
+
+}
@@ -0,0 +1,126 @@
+package Search;
+
+import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.BytesRef;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The log-space Dirichlet score of {@link QueryRetrievalModel}, split the way Lucene sums scores:
+ * each term query scores its matched-term part qf * log(1 + c(w,D)/(MU*p(w|REF))), with qf passed as
+ * the boost of the term query, and {@link #lengthScore(int, int)} gives the length normaliser that
+ * every known query token adds once per document, matched or not. {@link DirichletQuery} adds that
+ * to the documents its term disjunction matches.
+ * <p>
+ * p(w|REF) comes from the statistics the other engines use, the collection length of
+ * {@link Classes.IndexAccess#getTotalContentLength()} and the collection frequencies of
+ * {@link Classes.IndexAccess#CollectionFreq(String)}, not from Lucene's, which still count deleted
+ * documents. Norms are not used, the index keeps its own lengths, so computeNorm is never relevant.
+ */
+public class DirichletSimilarity extends Similarity {
+
+    private final double mu;
+    private final long collectionTotalLength;
+    private final Map<String, Long> collectionFreqs;
+
+    /**
+     * @param collectionTotalLength total number of tokens in the collection
+     * @param collectionFreqs       collection frequency of the query terms, Lucene's totalTermFreq is used
+     *                              for the terms not in the map
+     */
+    public DirichletSimilarity(double mu, long collectionTotalLength, Map<String, Long> collectionFreqs) {
+        this.mu = mu;
+        this.collectionTotalLength = collectionTotalLength;
+        this.collectionFreqs = collectionFreqs;
+    }
+
+    public DirichletSimilarity(double mu, long collectionTotalLength) {
+        this(mu, collectionTotalLength, Collections.emptyMap());
+    }
+
+    public double getMu() {
+        return mu;
+    }
+
+    /**
+     * knownTokens * log(MU/(|D|+MU)), the length part of the score of a document of length doclen
+     */
+    public double lengthScore(int knownTokens, int doclen) {
+        return knownTokens * Math.log(this.mu / (doclen + this.mu));
+    }
+
+    @Override
+    public long computeNorm(FieldInvertState state) {
+        return 1;
+    }
+
+    @Override
+    public SimWeight computeWeight(CollectionStatistics collectionStats, TermStatistics... termStats) {
+        long cf = 0;
+        for (TermStatistics stats : termStats) {
+            Long known = this.collectionFreqs.get(stats.term().utf8ToString());
+            cf += known != null ? known : stats.totalTermFreq();
+        }
+        // MU * p(w|REF), same expression as QueryRetrievalModel
+        return new DirichletWeight(this.mu * cf / this.collectionTotalLength);
+    }
+
+    @Override
+    public SimScorer simScorer(SimWeight weight, LeafReaderContext context) {
+        final DirichletWeight w = (DirichletWeight) weight;
+        return new SimScorer() {
+            @Override
+            public float score(int doc, float freq) {
+                return (float) (w.qf * Math.log1p(freq / w.muP));
+            }
+
+            @Override
+            public float computeSlopFactor(int distance) {
+                return 1;
+            }
+
+            @Override
+            public float computePayloadFactor(int doc, int start, int end, BytesRef payload) {
+                return 1;
+            }
+
+            @Override
+            public Explanation explain(int doc, Explanation freq) {
+                return Explanation.match(score(doc, freq.getValue()),
+                        String.format("qf=%s * log1p(tf=%s / (mu*p(w|REF)=%s))", w.qf, freq.getValue(), w.muP), freq);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Dirichlet(mu=" + mu + ")";
+    }
+
+    private static class DirichletWeight extends SimWeight {
+        final double muP;
+        // The boost of the term query, its frequency in the query
+        double qf = 1;
+
+        DirichletWeight(double muP) {
+            this.muP = muP;
+        }
+
+        @Override
+        public float getValueForNormalization() {
+            return 1;
+        }
+
+        @Override
+        public void normalize(float queryNorm, float boost) {
+            this.qf = boost;
+        }
+    }
+
+}
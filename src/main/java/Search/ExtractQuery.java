@@ -2,26 +2,18 @@ package Search;
 
 import Classes.Path;
 import Classes.Query;
-import Classes.Stemmer;
+import Classes.TokenNormalizer;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.Iterator;
-import java.util.Locale;
-import java.util.StringTokenizer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 public class ExtractQuery implements Iterator<Query> {
 
-    private Pattern matchNumberRegex = Pattern.compile("[0-9]+");
-    private boolean readyForNextQuery;
-    private BufferedReader reader;
-    private HashSet<String> stopWords = new HashSet<>();
+    private TopicParser parser;
+    private TopicParser.Topic nextTopic;
+    private TokenNormalizer normalizer;
     // Adjust as needed, title only is much faster
     private boolean isTitleOnly;
 
@@ -32,15 +24,12 @@ public class ExtractQuery implements Iterator<Query> {
      */
     public ExtractQuery() {
         try {
-            this.reader = Files.newBufferedReader(Paths.get(Path.TopicDir));
             this.isTitleOnly = true;
-            // Init stop words set
-            try (Stream<String> lines = Files.lines(Paths.get(Path.StopwordDir))) {
-                lines.forEach(s -> this.stopWords.add(s.trim().toLowerCase(Locale.US)));
-            }
+            this.parser = new TopicParser(Paths.get(Path.TopicDir), EnumSet.of(TopicParser.Field.TITLE));
+            this.normalizer = TokenNormalizer.withDefaultStopWords(1 << 14);
         } catch (Exception e) {
             e.printStackTrace();
-            this.reader = null;
+            this.closeHandler();
         }
     }
 
@@ -50,135 +39,41 @@ public class ExtractQuery implements Iterator<Query> {
 
     public void setTitleOnly(boolean titleOnly) {
         isTitleOnly = titleOnly;
+        if (this.parser != null)
+            this.parser.setFields(titleOnly ? EnumSet.of(TopicParser.Field.TITLE) : EnumSet.allOf(TopicParser.Field.class));
     }
 
     @Override
     public boolean hasNext() {
-        if (this.reader == null) {
-            this.readyForNextQuery = false;
-        } else {
-            try {
-                this.readyForNextQuery = moveToTopStart();
-                // File end, close reader
-                if (!this.readyForNextQuery)
-                    this.closeHandler();
-            } catch (Exception e) {
-                e.printStackTrace();
-                this.readyForNextQuery = false;
-            }
-        }
-        return this.readyForNextQuery;
-    }
-
-    @Override
-    public Query next() {
-        Query q = new Query();
-        if (!this.readyForNextQuery) return q;
-        q.SetTopicId(populateTopicId());
-        String originalContent = processOneTopic(this.isTitleOnly);
-        q.SetQueryContent(irPreProcess(originalContent));
-        this.readyForNextQuery = false;
-        return q;
-    }
-
-    /**
-     * 1) tokenized, 2) to lowercase, 3) remove stop words, 4) stemming
-     */
-    private String irPreProcess(String original) {
-        String wekaDelimiters = "\r\n\t.,;:\"()?! ";
-        StringTokenizer st = new StringTokenizer(original, wekaDelimiters);
-        StringBuilder sb = new StringBuilder();
-        while (st.hasMoreTokens()) {
-            String lcnss = normalizeString(st.nextToken());
-            if (lcnss.isEmpty()) continue;
-            sb.append(lcnss);
-            sb.append(' ');
-        }
-        return sb.toString();
-    }
-
-    private String normalizeString(String token) {
-        token = token.toLowerCase(Locale.US);
-        if (this.stopWords.contains(token)) return "";
-        char[] tokenLc = token.toCharArray();
-        Stemmer stemmer = new Stemmer();
-        stemmer.add(tokenLc, tokenLc.length);
-        stemmer.stem();
-        return stemmer.toString();
-    }
-
-    /**
-     * Found a topic, current pointer at end of <num>
-     */
-    private String populateTopicId() {
+        if (this.nextTopic != null) return true;
+        if (this.parser == null) return false;
         try {
-            String data = this.reader.readLine();
-            Matcher m = this.matchNumberRegex.matcher(data);
-            if (m.find()) {
-                return m.group(0).trim();
-            }
+            this.nextTopic = this.parser.nextTopic();
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return "UNKNOWN";
-    }
-
-    /**
-     * Move reader pointer to start position
-     *
-     * @return True if found start, False if hit EOF
-     */
-    private boolean moveToTopStart() throws IOException {
-        String data;
-        while ((data = this.reader.readLine()) != null) {
-            if (data.trim().toLowerCase(Locale.US).startsWith("<top>"))
-                return true;
-        }
-        return false;
+        // File end, close reader
+        if (this.nextTopic == null)
+            this.closeHandler();
+        return this.nextTopic != null;
     }
 
-    /**
-     * Line now at end of <num>, populate the whole query
-     */
-    private String processOneTopic(boolean titleOnly) {
-        StringBuilder sb = new StringBuilder();
-        boolean hasTitleSaved = false;
-        // Main logic for reading
-        try {
-            String line;
-            // Read all the way to end of this document
-            while (!((line = this.reader.readLine().trim()).startsWith("</top>"))) {
-                // No need to process this line with these conditions
-                if ((titleOnly && hasTitleSaved) || line.isEmpty()) continue;
-                String lcLine = line.toLowerCase(Locale.US).trim();
-                sb.append(' ');
-                if (lcLine.startsWith("<title>")) {
-                    // Parse title
-                    line = line.substring(8);
-                    if (titleOnly) {
-                        sb.append(line);
-                        hasTitleSaved = true;
-                        continue;
-                    }
-                } else if (lcLine.startsWith("<desc>")
-                        || lcLine.startsWith("<narr>")) {
-                    continue;
-                }
-                sb.append(line);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return sb.toString();
+    @Override
+    public Query next() {
+        if (!hasNext()) return new Query();
+        Query q = TopicParser.toQuery(this.nextTopic, this.normalizer);
+        this.nextTopic = null;
+        return q;
     }
 
     private void closeHandler() {
-        if (this.reader == null) return;
+        if (this.parser == null) return;
         try {
-            this.reader.close();
+            this.parser.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
+        this.parser = null;
     }
 
 }
@@ -0,0 +1,69 @@
+package Search;
+
+import Classes.Document;
+import Classes.Query;
+import IndexingLucene.MyIndexReader;
+
+import java.util.List;
+
+/**
+ * Check that {@link LuceneRetrievalModel} ranks like {@link QueryRetrievalModel} on the topics.
+ * <p>
+ * At every rank the two scores must agree within {@link LuceneRetrievalModel#SCORE_TOLERANCE}. A
+ * different docno at a rank is only a tie swap when the scores still agree, anything else is a
+ * mismatch and the check exits with status 1.
+ * <p>
+ * Usage: LuceneParityCheck [trectext|trecweb] [topN]
+ */
+public class LuceneParityCheck {
+
+    public static void main(String[] args) throws Exception {
+        String dataType = args.length > 0 ? args[0] : "trectext";
+        int topN = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        MyIndexReader ixreader = new MyIndexReader(dataType);
+        QueryRetrievalModel reference = new QueryRetrievalModel(ixreader);
+        LuceneRetrievalModel lucene = new LuceneRetrievalModel(ixreader);
+
+        int queries = 0, ranks = 0, swaps = 0, mismatches = 0;
+        double maxError = 0;
+        long referenceTime = 0, luceneTime = 0;
+        ExtractQuery topics = new ExtractQuery();
+        while (topics.hasNext()) {
+            Query aQuery = topics.next();
+            long start = System.nanoTime();
+            List<Document> expected = reference.retrieveQuery(aQuery, topN);
+            referenceTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            List<Document> actual = lucene.retrieveQuery(aQuery, topN);
+            luceneTime += System.nanoTime() - start;
+            queries++;
+            if (expected.size() != actual.size()) {
+                mismatches++;
+                System.out.println(String.format("%s: %d results, expected %d", aQuery.GetTopicId(), actual.size(), expected.size()));
+                continue;
+            }
+            for (int i = 0; i < expected.size(); i++) {
+                ranks++;
+                double want = expected.get(i).score(), got = actual.get(i).score();
+                double error = Math.abs(want - got) / Math.max(1, Math.abs(want));
+                maxError = Math.max(maxError, error);
+                boolean sameDoc = expected.get(i).docno().equals(actual.get(i).docno());
+                if (error > LuceneRetrievalModel.SCORE_TOLERANCE) {
+                    mismatches++;
+                    System.out.println(String.format("%s rank %d: %s %s, expected %s %s", aQuery.GetTopicId(), i + 1,
+                            actual.get(i).docno(), got, expected.get(i).docno(), want));
+                } else if (!sameDoc) {
+                    swaps++;
+                }
+            }
+        }
+        ixreader.close();
+
+        System.out.println(String.format("%d queries, %d ranks: %d tie swaps, %d mismatches, max relative score error %.2e",
+                queries, ranks, swaps, mismatches, maxError));
+        System.out.println(String.format("search time: QueryRetrievalModel %.1f ms, LuceneRetrievalModel %.1f ms",
+                referenceTime / 1e6, luceneTime / 1e6));
+        if (mismatches > 0) System.exit(1);
+    }
+
+}
@@ -0,0 +1,125 @@
+package Search;
+
+import Classes.Document;
+import Classes.Query;
+import IndexingLucene.MyIndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopScoreDocCollector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dirichlet retrieval run by Lucene's own query machinery.
+ * <p>
+ * The query becomes a disjunction of one TermQuery per distinct known term, boosted by its query
+ * frequency and scored by {@link DirichletSimilarity}, wrapped in a {@link DirichletQuery} that adds
+ * the length normaliser of the known query tokens to the matching documents, and collected by a
+ * TopScoreDocCollector. The query constant sum(log p(w|REF)) does not change the ranking and is
+ * added to the returned scores afterwards. Queries with more distinct terms than
+ * BooleanQuery.getMaxClauseCount() nest their disjunction.
+ * <p>
+ * Scores are the log scores of {@link QueryRetrievalModel} in {@link QueryRetrievalModel.ScoringMode#LOG}
+ * mode, but Lucene adds them up in float: they agree within {@link #SCORE_TOLERANCE}, and documents whose
+ * scores are that close may swap ranks.
+ */
+public class LuceneRetrievalModel {
+
+    /**
+     * Largest difference from the QueryRetrievalModel score, relative to the larger of 1 and the score
+     */
+    public static final double SCORE_TOLERANCE = 1e-6;
+
+    private static final String FIELD = "CONTENT";
+
+    private final MyIndexReader indexReader;
+    private final long collectionTotalLength;
+    private volatile double mu = 2000;
+
+    public LuceneRetrievalModel(MyIndexReader ixreader) {
+        indexReader = ixreader;
+        this.collectionTotalLength = ixreader.getTotalContentLength();
+    }
+
+    public double getMu() {
+        return mu;
+    }
+
+    public void setMu(double mu) {
+        this.mu = mu;
+    }
+
+    /**
+     * Same contract as {@link QueryRetrievalModel#retrieveQuery(Query, int)}
+     *
+     * @param aQuery The query to be searched for.
+     * @param TopN   The maximum number of returned document
+     */
+    public List<Document> retrieveQuery(Query aQuery, int TopN) throws IOException {
+        String[] queryTokens = aQuery.GetQueryContent().split(" ");
+        if (queryTokens.length == 0 || TopN <= 0) return new ArrayList<>(0);
+
+        double mu = this.mu;
+        QueryTerms query = new QueryTerms(queryTokens);
+        List<org.apache.lucene.search.Query> terms = new ArrayList<>(query.size());
+        Map<String, Long> collectionFreqs = new HashMap<>();
+        int knownTokens = 0;
+        double queryPart = 0;
+        for (int ord = 0; ord < query.size(); ord++) {
+            long cf = this.indexReader.CollectionFreq(query.terms[ord]);
+            // Non-exist, no need to search for it
+            if (cf == 0L) continue;
+            collectionFreqs.put(query.terms[ord], cf);
+            knownTokens += query.qfs[ord];
+            queryPart += query.qfs[ord] * Math.log(1.0 * cf / this.collectionTotalLength);
+            TermQuery termQuery = new TermQuery(new Term(FIELD, query.terms[ord]));
+            terms.add(new BoostQuery(termQuery, query.qfs[ord]));
+        }
+        if (knownTokens == 0) return new ArrayList<>(0);
+
+        DirichletSimilarity similarity = new DirichletSimilarity(mu, this.collectionTotalLength, collectionFreqs);
+        DirichletQuery luceneQuery = new DirichletQuery(disjunction(terms), this.indexReader, similarity, knownTokens);
+        // The searcher is cheap, a new one per query keeps the similarity's statistics private to the query
+        IndexSearcher searcher = new IndexSearcher(this.indexReader.getIndexReader());
+        searcher.setSimilarity(similarity);
+        // Lucene sizes its queue by TopN up front, there are never more hits than documents
+        TopScoreDocCollector collector = TopScoreDocCollector.create(Math.min(TopN, Math.max(1, this.indexReader.maxDoc())));
+        searcher.search(luceneQuery, collector);
+
+        ScoreDoc[] hits = collector.topDocs().scoreDocs;
+        int[] docids = new int[hits.length];
+        double[] scores = new double[hits.length];
+        for (int i = 0; i < hits.length; i++) {
+            docids[i] = hits[i].doc;
+            scores[i] = hits[i].score + queryPart;
+        }
+        return QueryRetrievalModel.resolveDocuments(this.indexReader, docids, scores, hits.length);
+    }
+
+    /**
+     * SHOULD disjunction of the clauses without coord, nested so no BooleanQuery has more than
+     * BooleanQuery.getMaxClauseCount() clauses. Nesting leaves the sum of the matched scores unchanged.
+     */
+    static org.apache.lucene.search.Query disjunction(List<org.apache.lucene.search.Query> clauses) {
+        int maxClauses = BooleanQuery.getMaxClauseCount();
+        while (clauses.size() > maxClauses) {
+            List<org.apache.lucene.search.Query> groups = new ArrayList<>();
+            for (int from = 0; from < clauses.size(); from += maxClauses)
+                groups.add(disjunction(clauses.subList(from, Math.min(from + maxClauses, clauses.size()))));
+            clauses = groups;
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder().setDisableCoord(true);
+        for (org.apache.lucene.search.Query clause : clauses) builder.add(clause, BooleanClause.Occur.SHOULD);
+        return builder.build();
+    }
+
+}
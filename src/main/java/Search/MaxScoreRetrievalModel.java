@@ -0,0 +1,273 @@
+package Search;
+
+import Classes.Document;
+import Classes.IndexAccess;
+import Classes.PostingList;
+import Classes.PostingsIterator;
+import Classes.Query;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Document-at-a-time Dirichlet retrieval with MaxScore pruning.
+ * <p>
+ * Scores are the same log-space Dirichlet scores as {@link QueryRetrievalModel} in
+ * {@link QueryRetrievalModel.ScoringMode#LOG} mode, and the returned top N is exactly the same.
+ * Each query term gets an upper bound on its contribution from the largest tf of the term in any
+ * document, and the document length part is bounded by the shortest document containing the term.
+ * Terms whose bounds together cannot lift a document over the current top N threshold become
+ * non-essential: they are only probed for documents found through the essential terms, and a
+ * document is dropped as soon as its remaining bound falls below the threshold.
+ * <p>
+ * Postings are walked with {@link IndexAccess#openPostings(String)} rather than loaded, so probing a
+ * non-essential term skips over the blocks between the documents it is asked about; lists already in the
+ * postings cache are walked from there. A model can be shared by many threads.
+ */
+public class MaxScoreRetrievalModel {
+
+    private final IndexAccess indexReader;
+    private final long collectionTotalLength;
+    private volatile double mu = 2000;
+    private final BoundedCache<String, PostingList> postingsCache;
+    // Scratch memory of finished queries, reused by the next ones
+    private final ConcurrentLinkedQueue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+    public MaxScoreRetrievalModel(IndexAccess ixreader) {
+        this(ixreader, QueryRetrievalModel.newPostingsCache(256L << 20));
+    }
+
+    /**
+     * @param postingsCache posting lists cache, may be shared with other models on the same index
+     */
+    public MaxScoreRetrievalModel(IndexAccess ixreader, BoundedCache<String, PostingList> postingsCache) {
+        indexReader = ixreader;
+        this.collectionTotalLength = ixreader.getTotalContentLength();
+        this.postingsCache = postingsCache;
+    }
+
+    public double getMu() {
+        return mu;
+    }
+
+    public void setMu(double mu) {
+        this.mu = mu;
+    }
+
+    /**
+     * Same contract as {@link QueryRetrievalModel#retrieveQuery(Query, int)}
+     *
+     * @param aQuery The query to be searched for.
+     * @param TopN   The maximum number of returned document
+     */
+    public List<Document> retrieveQuery(Query aQuery, int TopN) throws IOException {
+        String[] queryTokens = aQuery.GetQueryContent().split(" ");
+        if (queryTokens.length == 0) return new ArrayList<>(0);
+
+        // Read once so a concurrent setMu does not change a running query
+        double mu = this.mu;
+        QueryTerms query = new QueryTerms(queryTokens);
+        TermCursor[] cursors = openCursors(query, mu);
+        // Parts of the log score that only depend on the query, summed in ordinal order like QueryRetrievalModel
+        int knownTokens = 0;
+        double queryPart = 0;
+        for (TermCursor cursor : cursors) knownTokens += cursor.qf;
+        long[] termCfs = new long[query.size()];
+        for (TermCursor cursor : cursors) termCfs[cursor.ord] = cursor.cf;
+        for (int ord = 0; ord < termCfs.length; ord++) {
+            if (termCfs[ord] == 0L) continue;
+            queryPart += query.qfs[ord] * Math.log(1.0 * termCfs[ord] / this.collectionTotalLength);
+        }
+
+        Scratch scratch = this.scratchPool.poll();
+        if (scratch == null) scratch = new Scratch();
+        try {
+            TopKCollector topK = scratch.topK;
+            topK.reset(TopN);
+            searchMaxScore(cursors, scratch.termScores(query.size()), query.size(), knownTokens, queryPart, mu, topK);
+
+            int[] docids = new int[topK.size()];
+            double[] scores = new double[topK.size()];
+            int finalSize = topK.drainTo(docids, scores);
+            return QueryRetrievalModel.resolveDocuments(this.indexReader, docids, scores, finalSize);
+        } finally {
+            this.scratchPool.offer(scratch);
+        }
+    }
+
+    /**
+     * One cursor per known query term, ordered by upper bound ASC
+     */
+    private TermCursor[] openCursors(QueryTerms query, double mu) throws IOException {
+        List<TermCursor> cursors = new ArrayList<>(query.size());
+        for (int ord = 0; ord < query.size(); ord++) {
+            String term = query.terms[ord];
+            long cf = this.indexReader.CollectionFreq(term);
+            // Non-exist, no need to calc posting list
+            if (cf == 0L) continue;
+            // Walk a cached list in memory, otherwise straight from the index without loading or caching it
+            PostingList cached = this.postingsCache.getIfPresent(term);
+            PostingsIterator postings = cached != null ? cached.iterator() : this.indexReader.openPostings(term);
+            if (postings == null || postings.nextDoc() == PostingsIterator.NO_MORE_DOCS) continue;
+            TermCursor cursor = new TermCursor(ord, query.qfs[ord], cf, postings);
+            // MU * p(w|REF)
+            cursor.muP = mu * cf / this.collectionTotalLength;
+            cursor.upperBound = cursor.termScore(this.indexReader.maxTermFreq(term));
+            cursor.minDocLength = this.indexReader.minDocLength(term);
+            cursors.add(cursor);
+        }
+        cursors.sort((c1, c2) -> {
+            int cmp = Double.compare(c1.upperBound, c2.upperBound);
+            return cmp != 0 ? cmp : Integer.compare(c1.ord, c2.ord);
+        });
+        return cursors.toArray(new TermCursor[0]);
+    }
+
+    private void searchMaxScore(TermCursor[] cursors, double[] termScores, int numTerms, int knownTokens,
+                                double queryPart, double mu, TopKCollector topK) throws IOException {
+        int n = cursors.length;
+        // sumUpTo[i]: sum of the upper bounds of cursors[0..i]
+        // prefixBound[i]: best score of a document that only contains terms of cursors[0..i]
+        double[] sumUpTo = new double[n];
+        double[] prefixBound = new double[n];
+        int minDocLength = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            sumUpTo[i] = (i > 0 ? sumUpTo[i - 1] : 0) + cursors[i].upperBound;
+            minDocLength = Math.min(minDocLength, cursors[i].minDocLength);
+            prefixBound[i] = sumUpTo[i] + knownTokens * lengthNorm(minDocLength, mu) + queryPart;
+        }
+
+        double threshold = Double.NEGATIVE_INFINITY;
+        // cursors[0..firstEssential) are non-essential
+        int firstEssential = 0;
+        while (firstEssential < n) {
+            int doc = Integer.MAX_VALUE;
+            for (int i = firstEssential; i < n; i++) doc = Math.min(doc, cursors[i].docid());
+            if (doc == Integer.MAX_VALUE) break;
+
+            Arrays.fill(termScores, 0, numTerms, 0);
+            double lengthPart = knownTokens * lengthNorm(this.indexReader.docLength(doc), mu);
+            double bound = lengthPart + queryPart;
+            for (int i = firstEssential; i < n; i++) {
+                TermCursor cursor = cursors[i];
+                if (cursor.docid() != doc) continue;
+                double score = cursor.termScore(cursor.freq());
+                termScores[cursor.ord] = score;
+                bound += score;
+                cursor.next();
+            }
+            if (firstEssential > 0) bound += sumUpTo[firstEssential - 1];
+            // Probe the non-essential terms from the largest bound down while the document can still enter
+            boolean pruned = false;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (!canEnter(bound, threshold)) {
+                    pruned = true;
+                    break;
+                }
+                TermCursor cursor = cursors[i];
+                cursor.advance(doc);
+                bound -= cursor.upperBound;
+                if (cursor.docid() == doc) {
+                    double score = cursor.termScore(cursor.freq());
+                    termScores[cursor.ord] = score;
+                    bound += score;
+                }
+            }
+            if (pruned || !canEnter(bound, threshold)) continue;
+
+            // Exact score, summed in ordinal order so it matches QueryRetrievalModel bit for bit
+            double matched = 0;
+            for (int ord = 0; ord < numTerms; ord++) matched += termScores[ord];
+            topK.collect(doc, matched + lengthPart + queryPart);
+            if (topK.isFull() && topK.threshold() > threshold) {
+                threshold = topK.threshold();
+                while (firstEssential < n && !canEnter(prefixBound[firstEssential], threshold))
+                    firstEssential++;
+            }
+        }
+    }
+
+    /**
+     * log(MU/(|D|+MU))
+     */
+    private static double lengthNorm(int doclen, double mu) {
+        return Math.log(mu / (doclen + mu));
+    }
+
+    /**
+     * Could a document whose score is at most bound enter the top N. A later document only wins a tie
+     * with a smaller docid, and docids only grow here, so equal is not enough. The slack keeps bounds
+     * summed in a different order from being trusted beyond their rounding error.
+     */
+    private static boolean canEnter(double bound, double threshold) {
+        if (threshold == Double.NEGATIVE_INFINITY) return true;
+        return bound > threshold - 1e-9 * Math.max(1, Math.abs(threshold));
+    }
+
+    /**
+     * Working memory of one running query
+     */
+    private static class Scratch {
+        final TopKCollector topK = new TopKCollector(0);
+        // Per term ordinal, grown as needed
+        private double[] termScores = new double[16];
+
+        double[] termScores(int terms) {
+            if (termScores.length < terms) termScores = new double[Math.max(terms, 2 * termScores.length)];
+            return termScores;
+        }
+    }
+
+    /**
+     * Position in the posting list of one query term
+     */
+    private static class TermCursor {
+        final int ord;
+        final int qf;
+        final long cf;
+        final PostingsIterator postings;
+        double muP;
+        double upperBound;
+        int minDocLength;
+
+        TermCursor(int ord, int qf, long cf, PostingsIterator postings) {
+            this.ord = ord;
+            this.qf = qf;
+            this.cf = cf;
+            this.postings = postings;
+        }
+
+        /**
+         * Current docid, Integer.MAX_VALUE once exhausted
+         */
+        int docid() {
+            return postings.docid();
+        }
+
+        int freq() throws IOException {
+            return postings.freq();
+        }
+
+        void next() throws IOException {
+            postings.nextDoc();
+        }
+
+        /**
+         * Move to the first posting with docid >= target
+         */
+        void advance(int target) throws IOException {
+            postings.advance(target);
+        }
+
+        /**
+         * Matched-term part of the log Dirichlet score, see QueryRetrievalModel.getLogScore
+         */
+        double termScore(int tf) {
+            return qf * Math.log1p(tf / muP);
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+package Search;
+
+import Classes.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ranked results of recent queries, so a repeated query is answered without touching the index.
+ * <p>
+ * Queries are keyed by their normalized form, plus mu and the scoring mode: in LOG mode the distinct
+ * (already stemmed) terms in order of first appearance with their query frequencies, which is the order
+ * QueryRetrievalModel sums the term parts in, so "a b a" and "a a b" share an entry while "b a a" does not.
+ * Reordered terms would only agree up to rounding, enough to swap documents of nearly equal scores, and a
+ * hit must return exactly what a fresh computation would. PRODUCT mode keeps the whole token order because
+ * its score is order sensitive. The number of results is not part of the key: an entry computed for a top
+ * N also serves every smaller top N, a larger request recomputes and replaces it.
+ * <p>
+ * Entries are bounded by a byte budget (LRU) and an optional time to live, an entry found past its time to
+ * live is dropped. All are dropped when the index version the results are computed on changes.
+ */
+public class QueryResultCache {
+
+    // Rough cost of an entry besides its arrays
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private final BoundedCache<String, Entry> entries;
+    private final long ttlNanos;
+    private volatile long indexVersion;
+    private boolean versionSeen;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * A cache without time to live
+     *
+     * @param maxBytes memory budget over all entries
+     */
+    public QueryResultCache(long maxBytes) {
+        this(maxBytes, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param maxBytes memory budget over all entries
+     * @param ttl      how long an entry may be served after it was computed, 0 for ever
+     */
+    public QueryResultCache(long maxBytes, long ttl, TimeUnit unit) {
+        this.entries = new BoundedCache<>(maxBytes, BoundedCache::stringBytes, Entry::ramBytesUsed);
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * Normalized key of a tokenized query
+     */
+    public static String key(String[] tokens, double mu, QueryRetrievalModel.ScoringMode scoringMode) {
+        StringBuilder key = new StringBuilder();
+        key.append(scoringMode).append('|').append(mu).append('|');
+        if (scoringMode == QueryRetrievalModel.ScoringMode.PRODUCT) {
+            for (String token : tokens) if (!token.isEmpty()) key.append(token).append(' ');
+            return key.toString();
+        }
+        Map<String, Integer> qfs = new LinkedHashMap<>();
+        for (String token : tokens) if (!token.isEmpty()) qfs.merge(token, 1, Integer::sum);
+        for (Map.Entry<String, Integer> term : qfs.entrySet())
+            key.append(term.getKey()).append('^').append(term.getValue()).append(' ');
+        return key.toString();
+    }
+
+    /**
+     * The first topN cached results of key, or null if they have to be computed
+     *
+     * @param indexVersion version of the index the caller searches
+     */
+    public List<Document> get(String key, int topN, long indexVersion) {
+        checkVersion(indexVersion);
+        Entry entry = this.entries.getIfPresent(key);
+        if (entry == null || entry.indexVersion != indexVersion || !entry.covers(topN)) {
+            misses.increment();
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - entry.createdNanos > ttlNanos) {
+            this.entries.remove(key, entry);
+            expired.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        // Documents are mutable, every caller gets its own
+        int count = Math.min(topN, entry.docids.length);
+        List<Document> res = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            res.add(new Document(Integer.toString(entry.docids[i]), entry.docnos[i], entry.scores[i]));
+        return res;
+    }
+
+    /**
+     * Keep the results of key, computed for topN on the given index version
+     */
+    public void put(String key, int topN, long indexVersion, List<Document> results) {
+        checkVersion(indexVersion);
+        int count = results.size();
+        int[] docids = new int[count];
+        String[] docnos = new String[count];
+        double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            Document doc = results.get(i);
+            docids[i] = Integer.parseInt(doc.docid());
+            docnos[i] = doc.docno();
+            scores[i] = doc.score();
+        }
+        this.entries.put(key, new Entry(topN, indexVersion, docids, docnos, scores));
+    }
+
+    /**
+     * Drop every entry once the index moves to another version
+     */
+    private void checkVersion(long version) {
+        if (version == this.indexVersion) return;
+        synchronized (this) {
+            if (version == this.indexVersion) return;
+            this.entries.clear();
+            this.indexVersion = version;
+            if (versionSeen) invalidations.increment();
+            versionSeen = true;
+        }
+    }
+
+    public void clear() {
+        this.entries.clear();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Lookups that found an entry older than the time to live, and dropped it
+     */
+    public long expired() {
+        return expired.sum();
+    }
+
+    /**
+     * Times the cache was emptied because the index version changed
+     */
+    public long invalidations() {
+        return invalidations.sum();
+    }
+
+    public double hitRate() {
+        long hits = hits(), total = hits + misses();
+        return total == 0 ? 0 : 1.0 * hits / total;
+    }
+
+    public long size() {
+        return this.entries.size();
+    }
+
+    public long memoryBytes() {
+        return this.entries.memoryBytes();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entries=%d bytes=%d/%d hits=%d misses=%d hitRate=%.3f expired=%d evictions=%d invalidations=%d",
+                size(), memoryBytes(), this.entries.maxBytes(), hits(), misses(), hitRate(), expired(),
+                this.entries.evictions(), invalidations());
+    }
+
+    /**
+     * Ranked results of one query
+     */
+    private static class Entry {
+        // Number of results asked for, fewer are kept when fewer documents match
+        final int topN;
+        final long indexVersion;
+        final long createdNanos = System.nanoTime();
+        final int[] docids;
+        final String[] docnos;
+        final double[] scores;
+
+        Entry(int topN, long indexVersion, int[] docids, String[] docnos, double[] scores) {
+            this.topN = topN;
+            this.indexVersion = indexVersion;
+            this.docids = docids;
+            this.docnos = docnos;
+            this.scores = scores;
+        }
+
+        /**
+         * Whether the first n results are all known
+         */
+        boolean covers(int n) {
+            return n <= topN || docids.length < topN;
+        }
+
+        long ramBytesUsed() {
+            long bytes = ENTRY_OVERHEAD + 12L * docids.length;
+            for (String docno : docnos) if (docno != null) bytes += BoundedCache.stringBytes(docno);
+            return bytes;
+        }
+    }
+
+}
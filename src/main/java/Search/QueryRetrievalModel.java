@@ -1,25 +1,115 @@
 package Search;
 
 import Classes.Document;
+import Classes.IndexAccess;
+import Classes.PostingList;
 import Classes.Query;
-import IndexingLucene.MyIndexReader;
+import Metrics.LatencyHistogram;
+import Metrics.MetricsRegistry;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class QueryRetrievalModel {
 
-    private final MyIndexReader indexReader;
+    /**
+     * LOG sums per-term log scores and is the default, PRODUCT multiplies per-term probabilities
+     * and is kept as the reference for regression checks. Both give the same ranking.
+     */
+    public enum ScoringMode {LOG, PRODUCT}
+
+    /**
+     * Stages of a query, each timed into the histogram "retrieval.[name]" of the global MetricsRegistry.
+     * Queries answered by the result cache only count in "retrieval.query".
+     */
+    public enum Phase {
+        STAT_LOOKUP("statLookup"), POSTING_FETCH("postingFetch"), DOC_LENGTH_FETCH("docLengthFetch"),
+        SCORING("scoring"), TOP_K("topK"), DOCNO_RESOLUTION("docnoResolution");
+
+        private final LatencyHistogram latency;
+
+        Phase(String name) {
+            this.latency = MetricsRegistry.global().histogram("retrieval." + name);
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final LatencyHistogram QUERY_LATENCY = MetricsRegistry.global().histogram("retrieval.query");
+    // Per-thread allocation counter of the JVM, null when it has none
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final IndexAccess indexReader;
     private final long collectionTotalLength;
-    private double mu = 2000;
-    private HashMap<String, Long> collectionFreq = new HashMap<>();
-    private HashMap<String, int[][]> collectionPostings = new HashMap<>();
+    private volatile double mu = 2000;
+    private volatile ScoringMode scoringMode = ScoringMode.LOG;
+    // Debug mode: check every collection frequency against the sum of its posting list
+    private volatile boolean verifyStatistics = Boolean.getBoolean("QueryRetrievalModel.verifyStatistics");
+    private final BoundedCache<String, Long> collectionFreq;
+    private final BoundedCache<String, PostingList> collectionPostings;
+    // Queries taking at least this long are traced to slowQueryLog, negative when the log is off
+    private volatile long slowQueryNanos = Long.getLong("QueryRetrievalModel.slowQueryMillis", -1) < 0 ? -1
+            : TimeUnit.MILLISECONDS.toNanos(Long.getLong("QueryRetrievalModel.slowQueryMillis"));
+    private volatile Consumer<QueryTrace> slowQueryLog = trace -> System.err.print("[SLOW] " + trace);
+    // Ranked results of repeated queries, off unless set
+    private volatile QueryResultCache resultCache;
+    // Per-query working memory, each running query borrows one so queries can run on many threads
+    private final ConcurrentLinkedQueue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+    public QueryRetrievalModel(IndexAccess ixreader) {
+        this(ixreader, newPostingsCache(256L << 20));
+    }
 
-    public QueryRetrievalModel(MyIndexReader ixreader) {
+    /**
+     * @param postingsCache posting lists cache, may be shared with other models on the same index
+     */
+    public QueryRetrievalModel(IndexAccess ixreader, BoundedCache<String, PostingList> postingsCache) {
         indexReader = ixreader;
         this.collectionTotalLength = ixreader.getTotalContentLength();
+        this.collectionPostings = postingsCache;
+        this.collectionFreq = new BoundedCache<>(16L << 20, BoundedCache::stringBytes, cf -> 16);
+    }
+
+    /**
+     * A posting list cache holding at most maxBytes of postings
+     */
+    public static BoundedCache<String, PostingList> newPostingsCache(long maxBytes) {
+        return new BoundedCache<>(maxBytes, BoundedCache::stringBytes, PostingList::ramBytesUsed);
+    }
+
+    public BoundedCache<String, PostingList> getPostingsCache() {
+        return collectionPostings;
+    }
+
+    public BoundedCache<String, Long> getCollectionFreqCache() {
+        return collectionFreq;
+    }
+
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Answer repeated queries from the given cache, null to always search the index.
+     * The cache may be shared with other models on the same index.
+     */
+    public void setResultCache(QueryResultCache resultCache) {
+        this.resultCache = resultCache;
     }
 
     public double getMu() {
@@ -30,6 +120,50 @@ public class QueryRetrievalModel {
         this.mu = mu;
     }
 
+    public boolean isVerifyStatistics() {
+        return verifyStatistics;
+    }
+
+    /**
+     * Cross-check each collection frequency against its posting list when it is first loaded.
+     * Off by default, so statistics come from the index's statistics table alone; also enabled by
+     * -DQueryRetrievalModel.verifyStatistics=true.
+     */
+    public void setVerifyStatistics(boolean verifyStatistics) {
+        this.verifyStatistics = verifyStatistics;
+    }
+
+    /**
+     * Slow query log threshold in milliseconds, negative when the log is off
+     */
+    public long getSlowQueryThresholdMillis() {
+        return slowQueryNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(slowQueryNanos);
+    }
+
+    /**
+     * Trace every query and hand those taking at least thresholdMillis to the slow query log, a negative
+     * threshold turns the log off. Off by default, so queries are not traced; also enabled by
+     * -DQueryRetrievalModel.slowQueryMillis=500.
+     */
+    public void setSlowQueryThresholdMillis(long thresholdMillis) {
+        this.slowQueryNanos = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Where the traces of slow queries go, standard error by default
+     */
+    public void setSlowQueryLog(Consumer<QueryTrace> slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    public ScoringMode getScoringMode() {
+        return scoringMode;
+    }
+
+    public void setScoringMode(ScoringMode scoringMode) {
+        this.scoringMode = scoringMode;
+    }
+
     /**
      * Search for the topic information.
      * The returned results (retrieved documents) should be ranked by the score (from the most relevant to the least).
@@ -42,127 +176,346 @@ public class QueryRetrievalModel {
      * @param TopN   The maximum number of returned document
      */
     public List<Document> retrieveQuery(Query aQuery, int TopN) throws IOException {
+        return retrieveQuery(aQuery, TopN, null);
+    }
+
+    /**
+     * Search for the topic information and record what the search did into trace, a new or reused QueryTrace,
+     * null to not trace the query.
+     */
+    public List<Document> retrieveQuery(Query aQuery, int TopN, QueryTrace trace) throws IOException {
         String[] queryTokens = aQuery.GetQueryContent().split(" ");
         if (queryTokens.length == 0) return new ArrayList<>(0);
 
-        return internalQueryDocumentRanked(queryTokens, TopN);
+        Scratch scratch = borrowScratch();
+        try {
+            return internalQueryDocumentRanked(aQuery.GetTopicId(), queryTokens, TopN, scratch, trace);
+        } finally {
+            this.scratchPool.offer(scratch);
+        }
+    }
+
+    /**
+     * Run many queries on a pool of worker threads sharing this model and its index reader.
+     * Each worker keeps its own scratch memory for its whole run.
+     *
+     * @param queries     The queries to be searched for.
+     * @param topN        The maximum number of returned document per query
+     * @param parallelism Number of worker threads
+     * @return the results of each query, in the order of the queries
+     */
+    public List<List<Document>> retrieveBatch(List<Query> queries, int topN, int parallelism) throws IOException {
+        int workers = Math.max(1, Math.min(parallelism, queries.size()));
+        List<List<Document>> results = new ArrayList<>(Collections.nCopies(queries.size(), null));
+        AtomicInteger nextQuery = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> running = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                running.add(executor.submit(() -> {
+                    Scratch scratch = borrowScratch();
+                    try {
+                        int i;
+                        while ((i = nextQuery.getAndIncrement()) < queries.size()) {
+                            Query query = queries.get(i);
+                            String[] queryTokens = query.GetQueryContent().split(" ");
+                            results.set(i, queryTokens.length == 0 ? new ArrayList<>(0)
+                                    : internalQueryDocumentRanked(query.GetTopicId(), queryTokens, topN, scratch, null));
+                        }
+                    } finally {
+                        this.scratchPool.offer(scratch);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : running) worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch retrieval interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Batch retrieval failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private Scratch borrowScratch() {
+        Scratch scratch = this.scratchPool.poll();
+        return scratch != null ? scratch : new Scratch(this.indexReader.maxDoc());
     }
 
     /**
      * Internal method for querying one tokenized document, rank the result based on scores
      */
-    private List<Document> internalQueryDocumentRanked(String[] tokens, int topN) throws IOException {
-        HashMap<Integer, HashMap<String, Integer>> queryResult = populateQueryResult(tokens);
-        ArrayList<Document> allResults = queryLikelihood(queryResult, tokens);
-
-        // Order by score DESC
-        allResults.sort((doc1, doc2) -> {
-            // (d1 <= d2)
-            double d1s = doc1.score(), d2s = doc2.score();
-            return d1s > d2s ? -1 : 1;
-        });
-
-        // Pick top N results
-        int finalSize = Math.min(topN, allResults.size());
-        ArrayList<Document> res = new ArrayList<>(finalSize);
-        int countDoc = 0;
-        for (Document doc : allResults) {
-            res.add(doc);
-            if (++countDoc > finalSize - 1) break;
-        }
-        // Save memory
-        queryResult.forEach((id, tmp) -> tmp.clear());
-        queryResult.clear();
-        allResults.clear();
+    private List<Document> internalQueryDocumentRanked(String topicId, String[] tokens, int topN, Scratch scratch,
+                                                       QueryTrace trace) throws IOException {
+        long start = System.nanoTime();
+        long slowQueryNanos = this.slowQueryNanos;
+        // Untraced queries only pay for the null checks
+        if (trace == null && slowQueryNanos >= 0) trace = new QueryTrace();
+        scratch.trace = trace;
+        long allocatedBefore = 0;
+        if (trace != null) {
+            trace.start(topicId, topN);
+            allocatedBefore = allocatedBytes();
+        }
+        // Settings are read once so a concurrent setMu does not change a running query
+        scratch.mu = this.mu;
+        ScoringMode scoringMode = this.scoringMode;
+        scratch.logMode = scoringMode == ScoringMode.LOG;
+        QueryResultCache cache = this.resultCache;
+        String cacheKey = null;
+        long indexVersion = 0;
+        if (cache != null) {
+            cacheKey = QueryResultCache.key(tokens, scratch.mu, scoringMode);
+            indexVersion = this.indexReader.getIndexVersion();
+            List<Document> cached = cache.get(cacheKey, topN, indexVersion);
+            if (cached != null) {
+                long now = QUERY_LATENCY.recordSince(start);
+                if (trace != null) {
+                    trace.setResultCached(true);
+                    finishTrace(trace, null, null, null, now - start, 0, cached.size(), allocatedBefore,
+                            slowQueryNanos);
+                }
+                return cached;
+            }
+        }
+        QueryTerms query = new QueryTerms(tokens);
+        String[] terms = query.terms;
+        int[] tokenOrds = query.tokenOrds;
+        int[] termQfs = query.qfs;
+        long[] termCfs = new long[terms.length];
+        long[] phaseNanos = scratch.phaseNanos;
+        Arrays.fill(phaseNanos, 0);
+        if (trace != null)
+            for (int ord = 0; ord < terms.length; ord++) trace.addTerm(terms[ord], termQfs[ord]);
+
+        populateQueryResult(terms, termQfs, termCfs, scratch);
+        queryLikelihood(tokenOrds, termQfs, termCfs, scratch);
+
+        // Pick top N results, ordered by score DESC and ties by docid ASC.
+        // Candidates are kept as (docid, score) pairs, Documents are only built for the top N
+        long time = System.nanoTime();
+        scratch.topK.reset(topN);
+        for (int slot = 0; slot < scratch.accumulator.size(); slot++)
+            scratch.topK.collect(scratch.accumulator.docid(slot), scratch.scores[slot]);
+        int[] docids = new int[scratch.topK.size()];
+        double[] scores = new double[scratch.topK.size()];
+        int finalSize = scratch.topK.drainTo(docids, scores);
+        long now = System.nanoTime();
+        phaseNanos[Phase.TOP_K.ordinal()] += now - time;
+        time = now;
+        List<Document> res = resolveDocuments(this.indexReader, docids, scores, finalSize);
+        now = System.nanoTime();
+        phaseNanos[Phase.DOCNO_RESOLUTION.ordinal()] += now - time;
+        if (cache != null) cache.put(cacheKey, topN, indexVersion, res);
+        for (Phase phase : PHASES) phase.latency.record(phaseNanos[phase.ordinal()]);
+        QUERY_LATENCY.record(now - start);
+        if (trace != null)
+            finishTrace(trace, terms, termCfs, phaseNanos, now - start, scratch.accumulator.size(), res.size(),
+                    allocatedBefore, slowQueryNanos);
         return res;
     }
 
-    private HashMap<Integer, HashMap<String, Integer>> populateQueryResult(String[] tokens) throws IOException {
-        // <DOCID, <TERM, FREQ>>
-        HashMap<Integer, HashMap<String, Integer>> tokenOnCollection = new HashMap<>();
-        for (String token : tokens) {
-            Long cFreq = getCollectionFreq(token);
-            // Non-exist, no need to calc posting list
-            if (cFreq.equals(0L)) continue;
-            int[][] postingList = getCollectionPostings(token);
-            for (int[] postingForOneDoc : postingList) {
-                int docid = postingForOneDoc[0], docFreq = postingForOneDoc[1];
-                HashMap<String, Integer> oneTermFreq = tokenOnCollection.getOrDefault(docid, new HashMap<>());
-                if (oneTermFreq.size() == 0) {
-                    tokenOnCollection.putIfAbsent(docid, oneTermFreq);
-                }
-                oneTermFreq.put(token, docFreq);
+    /**
+     * Complete trace once the query is answered, and log it if it was slow.
+     * Document frequencies are looked up last, outside the measured time and allocation.
+     */
+    private void finishTrace(QueryTrace trace, String[] terms, long[] termCfs, long[] phaseNanos, long totalNanos,
+                             int candidates, int results, long allocatedBefore, long slowQueryNanos)
+            throws IOException {
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        trace.finish(phaseNanos, totalNanos, candidates, results, allocated);
+        if (terms != null)
+            for (int ord = 0; ord < terms.length; ord++)
+                if (termCfs[ord] != 0L) trace.setDf(ord, this.indexReader.DocFreq(terms[ord]));
+        if (slowQueryNanos >= 0 && totalNanos >= slowQueryNanos) this.slowQueryLog.accept(trace);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+                if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled())
+                    return counter;
             }
+        } catch (LinkageError e) {
+            // Not a HotSpot-style JVM
         }
-        return tokenOnCollection;
+        return null;
     }
 
     /**
-     * Cache collection posting list and get the cached result
+     * Bytes allocated so far by the current thread, -1 when the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Build Documents for the first count ranked (docid, score) pairs.
+     * Docnos are looked up in docid order, the returned list keeps the rank order.
      */
-    private int[][] getCollectionPostings(String token) throws IOException {
-        if (!this.collectionPostings.containsKey(token)) {
-            int[][] postingList = this.indexReader.getPostingList(token);
-            if (postingList == null) postingList = new int[0][];
-            // Show a warning about detecting non-exist term token
-            if (postingList.length == 0)
-                System.err.println(String.format("[WARN] Token <%s> not in collection", token));
-            this.collectionPostings.put(token, postingList);
+    static List<Document> resolveDocuments(IndexAccess indexReader, int[] docids, double[] scores, int count)
+            throws IOException {
+        int[] byDocid = Arrays.copyOf(docids, count);
+        Arrays.sort(byDocid);
+        String[] docnos = indexReader.getDocnos(byDocid);
+        ArrayList<Document> res = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String docno = docnos[Arrays.binarySearch(byDocid, docids[i])];
+            res.add(new Document(Integer.toString(docids[i]), docno, scores[i]));
         }
-        return this.collectionPostings.get(token);
+        return res;
     }
 
-    private Long calcCollectionFreq(int[][] postings) {
-        long count = 0;
-        for (int[] one : postings) {
-            count += one[1];
+    /**
+     * Term-at-a-time pass over the postings of each query term, filling the accumulator.
+     * Statistics, then posting lists, are looked up for all terms before any scoring so each phase is timed once.
+     */
+    private void populateQueryResult(String[] terms, int[] termQfs, long[] termCfs, Scratch scratch)
+            throws IOException {
+        long[] phaseNanos = scratch.phaseNanos;
+        QueryTrace trace = scratch.trace;
+        long time = System.nanoTime();
+        for (int ord = 0; ord < terms.length; ord++) {
+            boolean cached = trace != null && this.collectionFreq.contains(terms[ord]);
+            termCfs[ord] = getCollectionFreq(terms[ord]);
+            if (trace != null) trace.setStats(ord, termCfs[ord], cached);
         }
-        return count;
+        long now = System.nanoTime();
+        phaseNanos[Phase.STAT_LOOKUP.ordinal()] += now - time;
+        time = now;
+        PostingList[] postings = scratch.postings(terms.length);
+        for (int ord = 0; ord < terms.length; ord++) {
+            // Non-exist, no need to calc posting list
+            if (termCfs[ord] == 0L) {
+                postings[ord] = null;
+                continue;
+            }
+            boolean cached = trace != null && this.collectionPostings.contains(terms[ord]);
+            postings[ord] = getCollectionPostings(terms[ord]);
+            if (trace != null) trace.setPostings(ord, postings[ord].size(), cached);
+        }
+        now = System.nanoTime();
+        phaseNanos[Phase.POSTING_FETCH.ordinal()] += now - time;
+        time = now;
+        ScoreAccumulator accumulator = scratch.accumulator;
+        accumulator.reset();
+        for (int ord = 0; ord < terms.length; ord++) {
+            PostingList postingList = postings[ord];
+            if (postingList == null) continue;
+            // MU * p(w|REF)
+            double muP = scratch.mu * termCfs[ord] / this.collectionTotalLength;
+            for (int i = 0; i < postingList.size(); i++) {
+                int tf = postingList.freq(i);
+                double termScore = scratch.logMode ? termQfs[ord] * Math.log1p(tf / muP) : 0;
+                accumulator.add(postingList.docid(i), ord, tf, termScore);
+            }
+            postings[ord] = null;
+        }
+        phaseNanos[Phase.SCORING.ordinal()] += System.nanoTime() - time;
+    }
+
+    /**
+     * Cache collection posting list and get the cached result
+     */
+    private PostingList getCollectionPostings(String token) throws IOException {
+        return this.collectionPostings.get(token, t -> loadPostings(this.indexReader, t));
+    }
+
+    /**
+     * Posting list of token for a posting list cache, an empty list rather than null for an absent token so
+     * the absence is cached too. Every model sharing a cache loads through here.
+     */
+    static PostingList loadPostings(IndexAccess indexReader, String token) throws IOException {
+        PostingList postingList = indexReader.getPostings(token);
+        if (postingList == null) postingList = new PostingList(new int[0], new int[0], 0);
+        return postingList;
     }
 
     /**
      * Get term freq in the given collection of given token
      */
     private Long getCollectionFreq(String token) throws IOException {
-        if (!this.collectionFreq.containsKey(token)) {
-            Long termFreq = this.indexReader.CollectionFreq(token);
-            Long myFreq = calcCollectionFreq(getCollectionPostings(token));
+        return this.collectionFreq.get(token, this::loadCollectionFreq);
+    }
+
+    private Long loadCollectionFreq(String token) throws IOException {
+        Long termFreq = this.indexReader.CollectionFreq(token);
+        // Show a warning about detecting non-exist term token
+        if (termFreq == 0L)
+            System.err.println(String.format("[WARN] Token <%s> not in collection", token));
+        if (this.verifyStatistics) {
+            Long myFreq = getCollectionPostings(token).collectionFreq();
             if (!myFreq.equals(termFreq))
                 System.err.println("Collection frequency disagree.");
-            this.collectionFreq.put(token, termFreq);
         }
-        return this.collectionFreq.get(token);
+        return termFreq;
     }
 
     /**
-     * Use LM method for calc the query result score
+     * Use LM method for calc the query result score of every candidate into scratch.scores
      */
-    private ArrayList<Document> queryLikelihood(HashMap<Integer, HashMap<String, Integer>> queryResult, String[] tokens)
+    private void queryLikelihood(int[] tokenOrds, int[] termQfs, long[] termCfs, Scratch scratch)
             throws IOException {
-        ArrayList<Document> allResults = new ArrayList<>(queryResult.size());
-        for (Integer docid : queryResult.keySet()) {
-            double score = getScore(tokens, queryResult.get(docid), this.indexReader.docLength(docid));
-            Document d = new Document(docid.toString(), this.indexReader.getDocno(docid), score);
-            allResults.add(d);
+        long[] phaseNanos = scratch.phaseNanos;
+        int candidates = scratch.accumulator.size();
+        long time = System.nanoTime();
+        int[] docLengths = scratch.docLengths(candidates);
+        // One bulk read of the dense length column for every candidate
+        this.indexReader.docLength(scratch.accumulator.docids(), docLengths, candidates);
+        long now = System.nanoTime();
+        phaseNanos[Phase.DOC_LENGTH_FETCH.ordinal()] += now - time;
+        time = now;
+        // Parts of the log score that only depend on the query: number of known tokens and sum(log p(w|REF))
+        int knownTokens = 0;
+        double queryPart = 0;
+        for (int ord = 0; ord < termCfs.length; ord++) {
+            if (termCfs[ord] == 0L) continue;
+            knownTokens += termQfs[ord];
+            queryPart += termQfs[ord] * Math.log(1.0 * termCfs[ord] / this.collectionTotalLength);
+        }
+        double[] scores = scratch.scores;
+        for (int slot = 0; slot < candidates; slot++) {
+            int doclen = docLengths[slot];
+            scores[slot] = scratch.logMode
+                    ? getLogScore(scratch, slot, doclen, knownTokens, queryPart)
+                    : getScore(scratch, tokenOrds, termCfs, slot, doclen);
         }
-        return allResults;
+        phaseNanos[Phase.SCORING.ordinal()] += System.nanoTime() - time;
+    }
+
+    /**
+     * Dirichlet smoothing in log space, equal to log(getScore) without the underflow.
+     * <p>
+     * log p(w|D) = log(1 + c(w,D)/(MU*p(w|REF))) + log(MU/(|D|+MU)) + log p(w|REF), so a document scores the sum
+     * of its matched-term parts (already in the accumulator), one length normaliser per known query token
+     * and the query constant.
+     */
+    private double getLogScore(Scratch scratch, int slot, int doclen, int knownTokens, double queryPart) {
+        double lengthNorm = Math.log(scratch.mu / (doclen + scratch.mu));
+        return scratch.accumulator.score(slot) + knownTokens * lengthNorm + queryPart;
     }
 
     /**
      * Dirichlet smoothing (Reference: org.apache.lucene.search.similarities.LMDirichletSimilarity)
+     * Product form, used by ScoringMode.PRODUCT.
      */
-    private double getScore(String[] tokens, HashMap<String, Integer> docTermFreqList, int doclen) {
+    private double getScore(Scratch scratch, int[] tokenOrds, long[] termCfs, int slot, int doclen) {
         double score = 1.0;
-        double adjLen = (doclen + this.mu);
+        double adjLen = (doclen + scratch.mu);
         double // (|D|/(|D|+MU)) as l1 and (MU/(|D|+MU)) as r1
                 l1 = 1.0 * doclen / adjLen,
-                r1 = 1.0 * this.mu / adjLen;
-        for (String token : tokens) {
-            Long cf = this.collectionFreq.get(token);
+                r1 = 1.0 * scratch.mu / adjLen;
+        for (int ord : tokenOrds) {
+            long cf = termCfs[ord];
             // Non-exist, no need to calc rest
-            if (cf.equals(0L)) continue;
-            int tf = docTermFreqList.getOrDefault(token, 0);
-            //System.err.println(String.format("Doc freq: %d,%d", tf, tf1));
+            if (cf == 0L) continue;
+            int tf = scratch.accumulator.tf(slot, ord);
             double // p(w|D) = l1*(c(w,D)/|D|) + r1*p(w|REF)
                     l2 = 1.0 * tf / doclen,
                     r2 = 1.0 * cf / this.collectionTotalLength;
@@ -173,4 +526,43 @@ public class QueryRetrievalModel {
         return score;
     }
 
+    /**
+     * Working memory of one running query
+     */
+    private static class Scratch {
+        final ScoreAccumulator accumulator;
+        final TopKCollector topK = new TopKCollector(0);
+        // Nanoseconds spent in each Phase by the running query
+        final long[] phaseNanos = new long[PHASES.length];
+        // Trace of the running query, null when it is not traced
+        QueryTrace trace;
+        // Per term ordinal and per candidate slot, grown as needed
+        private PostingList[] postings = new PostingList[16];
+        private int[] docLengths = new int[1024];
+        double[] scores = new double[1024];
+        double mu;
+        boolean logMode;
+
+        Scratch(int maxDoc) {
+            this.accumulator = new ScoreAccumulator(maxDoc);
+        }
+
+        PostingList[] postings(int terms) {
+            if (postings.length < terms) postings = new PostingList[Math.max(terms, 2 * postings.length)];
+            return postings;
+        }
+
+        /**
+         * Room for the lengths, and the scores, of the given number of candidates
+         */
+        int[] docLengths(int candidates) {
+            if (docLengths.length < candidates) {
+                int size = Math.max(candidates, 2 * docLengths.length);
+                docLengths = new int[size];
+                scores = new double[size];
+            }
+            return docLengths;
+        }
+    }
+
 }
@@ -0,0 +1,36 @@
+package Search;
+
+import java.util.LinkedHashMap;
+
+/**
+ * The distinct terms of a tokenized query, each addressed by a small ordinal in order of first appearance
+ */
+class QueryTerms {
+
+    final String[] terms;
+    // Ordinal of every token, in query order and with repeats
+    final int[] tokenOrds;
+    // Number of times each term occurs in the query
+    final int[] qfs;
+
+    QueryTerms(String[] tokens) {
+        LinkedHashMap<String, Integer> ordinals = new LinkedHashMap<>();
+        this.tokenOrds = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            Integer ord = ordinals.get(tokens[i]);
+            if (ord == null) {
+                ord = ordinals.size();
+                ordinals.put(tokens[i], ord);
+            }
+            this.tokenOrds[i] = ord;
+        }
+        this.terms = ordinals.keySet().toArray(new String[0]);
+        this.qfs = new int[this.terms.length];
+        for (int ord : this.tokenOrds) this.qfs[ord]++;
+    }
+
+    int size() {
+        return terms.length;
+    }
+
+}
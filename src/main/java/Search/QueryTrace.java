@@ -0,0 +1,196 @@
+package Search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What one query did, filled by QueryRetrievalModel when tracing: its terms with their statistics and where they
+ * came from, the time spent in each phase, the number of candidate documents and the bytes the query allocated.
+ * <p>
+ * Pass a new trace to {@link QueryRetrievalModel#retrieveQuery(Classes.Query, int, QueryTrace)} to trace one
+ * query; the slow query log traces every query and prints the slow ones.
+ */
+public class QueryTrace {
+
+    /**
+     * One distinct query term
+     */
+    public static class Term {
+        private final String term;
+        private final int qf;
+        private long cf;
+        private int df;
+        private int postings;
+        private boolean statsCached;
+        private boolean postingsCached;
+
+        Term(String term, int qf) {
+            this.term = term;
+            this.qf = qf;
+        }
+
+        public String term() {
+            return term;
+        }
+
+        /**
+         * Occurrences in the query
+         */
+        public int qf() {
+            return qf;
+        }
+
+        public long cf() {
+            return cf;
+        }
+
+        public int df() {
+            return df;
+        }
+
+        /**
+         * Length of the posting list, 0 when the term is not in the collection
+         */
+        public int postings() {
+            return postings;
+        }
+
+        /**
+         * The collection frequency came from the model's cache rather than the index
+         */
+        public boolean statsCached() {
+            return statsCached;
+        }
+
+        /**
+         * The posting list came from the model's cache rather than the index
+         */
+        public boolean postingsCached() {
+            return postingsCached;
+        }
+    }
+
+    private String topicId;
+    private int topN;
+    private boolean resultCached;
+    private final List<Term> terms = new ArrayList<>();
+    private final long[] phaseNanos = new long[QueryRetrievalModel.Phase.values().length];
+    private long totalNanos;
+    private int candidates;
+    private int results;
+    private long allocatedBytes = -1;
+
+    public String topicId() {
+        return topicId;
+    }
+
+    public int topN() {
+        return topN;
+    }
+
+    /**
+     * The ranking came from the result cache, no term or phase was traced
+     */
+    public boolean resultCached() {
+        return resultCached;
+    }
+
+    public List<Term> terms() {
+        return Collections.unmodifiableList(terms);
+    }
+
+    public long phaseNanos(QueryRetrievalModel.Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Documents scored, those matching at least one term
+     */
+    public int candidates() {
+        return candidates;
+    }
+
+    public int results() {
+        return results;
+    }
+
+    /**
+     * Heap allocated by the query's thread while it ran, -1 if the JVM does not count it
+     */
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Forget the previous query, a trace can be reused
+     */
+    void start(String topicId, int topN) {
+        this.topicId = topicId;
+        this.topN = topN;
+        this.resultCached = false;
+        this.terms.clear();
+        finish(new long[phaseNanos.length], 0, 0, 0, -1);
+    }
+
+    void setResultCached(boolean resultCached) {
+        this.resultCached = resultCached;
+    }
+
+    void addTerm(String term, int qf) {
+        terms.add(new Term(term, qf));
+    }
+
+    void setStats(int ordinal, long cf, boolean cached) {
+        Term t = terms.get(ordinal);
+        t.cf = cf;
+        t.statsCached = cached;
+    }
+
+    void setPostings(int ordinal, int postings, boolean cached) {
+        Term t = terms.get(ordinal);
+        t.postings = postings;
+        t.postingsCached = cached;
+    }
+
+    void setDf(int ordinal, int df) {
+        terms.get(ordinal).df = df;
+    }
+
+    void finish(long[] phaseNanos, long totalNanos, int candidates, int results, long allocatedBytes) {
+        if (phaseNanos != null) System.arraycopy(phaseNanos, 0, this.phaseNanos, 0, this.phaseNanos.length);
+        this.totalNanos = totalNanos;
+        this.candidates = candidates;
+        this.results = results;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("query %s: %.3f ms, top %d, %d results, %d candidates, %s allocated%s%n",
+                topicId, totalNanos / 1e6, topN, results, candidates,
+                allocatedBytes < 0 ? "? bytes" : allocatedBytes + " bytes", resultCached ? ", from result cache" : ""));
+        if (resultCached) return sb.toString();
+        sb.append("  phases:");
+        for (QueryRetrievalModel.Phase phase : QueryRetrievalModel.Phase.values())
+            sb.append(String.format(" %s=%.3fms", phase.name().toLowerCase(), phaseNanos[phase.ordinal()] / 1e6));
+        sb.append(System.lineSeparator());
+        for (Term t : terms) {
+            if (t.cf == 0) {
+                sb.append(String.format("  term %-20s qf=%d not in the collection, stats from %s%n",
+                        t.term, t.qf, t.statsCached ? "cache" : "index"));
+                continue;
+            }
+            sb.append(String.format("  term %-20s qf=%d cf=%d df=%d postings=%d, stats from %s, postings from %s%n",
+                    t.term, t.qf, t.cf, t.df, t.postings,
+                    t.statsCached ? "cache" : "index", t.postingsCached ? "cache" : "index"));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,131 @@
+package Search;
+
+import java.util.Arrays;
+
+/**
+ * Per-query candidate state for term-at-a-time scoring.
+ * <p>
+ * A dense docid -> slot table marks the candidates. Each slot keeps a running sum of additive term
+ * scores and a chain of (ordinal, tf) entries, one per query term found in the document, so the tfs
+ * take one entry per posting rather than a cell per candidate and query term. All arrays are reused
+ * across queries and only the touched slots are cleared, so scoring a query allocates nothing per
+ * candidate.
+ */
+public class ScoreAccumulator {
+
+    // Largest array the JVM reliably allocates
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    // docid -> slot + 1, 0 when the document is not a candidate
+    private final int[] slotOf;
+    // slot -> docid
+    private int[] docids = new int[1024];
+    // slot -> sum of the term scores added so far
+    private double[] scores = new double[1024];
+    // slot -> last entry added for the slot + 1, 0 when none
+    private int[] lastEntry = new int[1024];
+    // entry -> ordinal, tf and the previous entry of the same slot + 1
+    private int[] entryOrds = new int[1024];
+    private int[] entryTfs = new int[1024];
+    private int[] entryPrevious = new int[1024];
+    private int size;
+    private int entries;
+
+    public ScoreAccumulator(int maxDoc) {
+        this.slotOf = new int[maxDoc];
+    }
+
+    /**
+     * Forget the previous query
+     */
+    public void reset() {
+        for (int slot = 0; slot < this.size; slot++)
+            this.slotOf[this.docids[slot]] = 0;
+        this.size = 0;
+        this.entries = 0;
+    }
+
+    /**
+     * Record that the term with the given ordinal occurs tf times in docid and adds termScore to its sum
+     */
+    public void add(int docid, int ordinal, int tf, double termScore) {
+        int slot = this.slotOf[docid] - 1;
+        if (slot < 0) {
+            slot = this.size++;
+            ensureSlots(this.size);
+            this.slotOf[docid] = this.size;
+            this.docids[slot] = docid;
+            this.scores[slot] = 0;
+            this.lastEntry[slot] = 0;
+        }
+        int entry = this.entries;
+        ensureEntries(entry + 1);
+        this.entries++;
+        this.entryOrds[entry] = ordinal;
+        this.entryTfs[entry] = tf;
+        this.entryPrevious[entry] = this.lastEntry[slot];
+        this.lastEntry[slot] = entry + 1;
+        this.scores[slot] += termScore;
+    }
+
+    /**
+     * Number of candidate documents
+     */
+    public int size() {
+        return size;
+    }
+
+    public int docid(int slot) {
+        return docids[slot];
+    }
+
+    /**
+     * The docid of every slot, in its first size() entries. The array is the accumulator's own, only valid
+     * until the next add or reset.
+     */
+    public int[] docids() {
+        return docids;
+    }
+
+    /**
+     * tf of the term with the given ordinal in the candidate, 0 if the term was not added for it
+     */
+    public int tf(int slot, int ordinal) {
+        for (int entry = lastEntry[slot]; entry != 0; entry = entryPrevious[entry - 1]) {
+            if (entryOrds[entry - 1] == ordinal) return entryTfs[entry - 1];
+        }
+        return 0;
+    }
+
+    public double score(int slot) {
+        return scores[slot];
+    }
+
+    private void ensureSlots(int slots) {
+        if (slots > this.docids.length) {
+            int length = grow(this.docids.length, slots);
+            this.docids = Arrays.copyOf(this.docids, length);
+            this.scores = Arrays.copyOf(this.scores, length);
+            this.lastEntry = Arrays.copyOf(this.lastEntry, length);
+        }
+    }
+
+    private void ensureEntries(int count) {
+        if (count > this.entryOrds.length) {
+            int length = grow(this.entryOrds.length, count);
+            this.entryOrds = Arrays.copyOf(this.entryOrds, length);
+            this.entryTfs = Arrays.copyOf(this.entryTfs, length);
+            this.entryPrevious = Arrays.copyOf(this.entryPrevious, length);
+        }
+    }
+
+    /**
+     * New length of an array that must hold needed elements, doubled in long so it cannot wrap
+     */
+    private static int grow(int length, int needed) {
+        if (needed > MAX_ARRAY_LENGTH)
+            throw new IllegalStateException("More than " + MAX_ARRAY_LENGTH + " postings for one query");
+        return (int) Math.min(MAX_ARRAY_LENGTH, Math.max(needed, 2L * length));
+    }
+
+}
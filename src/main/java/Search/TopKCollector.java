@@ -0,0 +1,129 @@
+package Search;
+
+import java.util.Arrays;
+
+/**
+ * Keep the K best (docid, score) pairs seen so far.
+ * <p>
+ * A binary min-heap over parallel int/double arrays, the root is the weakest kept pair, so each
+ * collect is O(log K) and nothing is allocated per candidate. Higher score ranks first, equal
+ * scores rank the smaller docid first. The arrays grow with the number of pairs actually kept, not with
+ * K, so a K meaning "all results" costs no more than the candidates, and they are reused across
+ * {@link #reset(int)} calls.
+ */
+public class TopKCollector {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int k;
+    private int size;
+    private int[] docids = new int[0];
+    private double[] scores = new double[0];
+
+    public TopKCollector(int k) {
+        reset(k);
+    }
+
+    /**
+     * Drop everything collected and start over with a (possibly different) K
+     */
+    public void reset(int k) {
+        this.k = Math.max(k, 0);
+        this.size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == k;
+    }
+
+    /**
+     * Lowest score a new pair must beat to get in, -Infinity while the heap is not full
+     */
+    public double threshold() {
+        return isFull() && k > 0 ? scores[0] : Double.NEGATIVE_INFINITY;
+    }
+
+    public void collect(int docid, double score) {
+        if (size < k) {
+            if (size == docids.length) grow();
+            docids[size] = docid;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (k > 0 && worse(docids[0], scores[0], docid, score)) {
+            docids[0] = docid;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Move the collected pairs out in rank order (best first) and empty the heap
+     *
+     * @return number of pairs written
+     */
+    public int drainTo(int[] outDocids, double[] outScores) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            outDocids[i] = docids[0];
+            outScores[i] = scores[0];
+            size--;
+            if (size > 0) {
+                docids[0] = docids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return count;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min(k, Math.max(INITIAL_CAPACITY, 2L * docids.length));
+        docids = Arrays.copyOf(docids, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+    }
+
+    /**
+     * True if pair a ranks below pair b
+     */
+    private static boolean worse(int docA, double scoreA, int docB, double scoreB) {
+        int cmp = Double.compare(scoreA, scoreB);
+        return cmp < 0 || (cmp == 0 && docA > docB);
+    }
+
+    private void siftUp(int i) {
+        int doc = docids[i];
+        double score = scores[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(doc, score, docids[parent], scores[parent])) break;
+            docids[i] = docids[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        docids[i] = doc;
+        scores[i] = score;
+    }
+
+    private void siftDown(int i) {
+        int doc = docids[i];
+        double score = scores[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && worse(docids[right], scores[right], docids[child], scores[child]))
+                child = right;
+            if (!worse(docids[child], scores[child], doc, score)) break;
+            docids[i] = docids[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        docids[i] = doc;
+        scores[i] = score;
+    }
+
+}
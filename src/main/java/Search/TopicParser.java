@@ -0,0 +1,277 @@
+package Search;
+
+import Classes.Query;
+import Classes.TokenNormalizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Read TREC topics, {@code <top> <num> <title> <desc> <narr> </top>}, in one pass over a char buffer.
+ * <p>
+ * Tags are matched case-insensitively wherever they are, not only at the start of a line, and the text of each
+ * field runs up to the next tag; the optional closing tags, {@code </title>} and the like, end their field. Only the selected fields are kept; the "Description:" and "Narrative:" labels
+ * opening desc and narr are dropped. Topics are read one at a time, so a file of any size streams through a
+ * fixed buffer.
+ */
+public class TopicParser implements Closeable {
+
+    public enum Field {TITLE, DESC, NARR}
+
+    /**
+     * Raw text of one topic, the selected fields separated by spaces in file order
+     */
+    public static class Topic {
+        private final String id;
+        private final String text;
+
+        Topic(String id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public String text() {
+            return text;
+        }
+    }
+
+    // What the text being read belongs to
+    private enum Section {NONE, NUM, TITLE, DESC, NARR}
+
+    private static final String[] LABELS = {null, null, null, "description:", "narrative:"};
+    // Longest tag, "</title>" and "</top>" included
+    private static final int MAX_TAG = 8;
+
+    private final Reader reader;
+    private final char[] buffer = new char[1 << 16];
+    private int pos;
+    private int limit;
+    private volatile Set<Field> fields;
+    private final StringBuilder num = new StringBuilder();
+    private final StringBuilder text = new StringBuilder();
+    private final char[] tag = new char[MAX_TAG];
+    // Chars read by the last readTag, without the '<'
+    private int tagLength;
+
+    public TopicParser(Path file, Set<Field> fields) throws IOException {
+        this(Files.newBufferedReader(file, StandardCharsets.UTF_8), fields);
+    }
+
+    public TopicParser(Reader reader, Set<Field> fields) {
+        this.reader = reader;
+        this.fields = EnumSet.copyOf(fields);
+    }
+
+    public Set<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Fields to keep from the next topic on
+     */
+    public void setFields(Set<Field> fields) {
+        this.fields = EnumSet.copyOf(fields);
+    }
+
+    /**
+     * The next topic, or null at the end of the input
+     */
+    public Topic nextTopic() throws IOException {
+        Set<Field> fields = this.fields;
+        // Skip to the next <top>
+        Section section = null;
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '<' && readTag() == Tag.TOP) {
+                section = Section.NONE;
+                break;
+            }
+        }
+        if (section == null) return null;
+        num.setLength(0);
+        text.setLength(0);
+        int fieldStart = 0;
+        while ((c = read()) >= 0) {
+            if (c == '<') {
+                Tag t = readTag();
+                if (t == null) {
+                    // Not a tag, keep what was read as text
+                    append(section, fields, '<');
+                    for (int i = 0; i < tagLength; i++) append(section, fields, tag[i]);
+                    continue;
+                }
+                dropLabel(section, fields, fieldStart);
+                if (t == Tag.END_TOP) break;
+                // A stray <top> before </top> starts no field
+                section = t.section != null ? t.section : Section.NONE;
+                if (keeps(section, fields)) {
+                    if (text.length() > 0) text.append(' ');
+                    fieldStart = text.length();
+                }
+                continue;
+            }
+            append(section, fields, (char) c);
+        }
+        if (c < 0) dropLabel(section, fields, fieldStart);
+        return new Topic(topicId(), text.toString());
+    }
+
+    /**
+     * Parse every remaining topic, tokenize, stop and stem them on a pool of threads and hand the queries to
+     * consumer in topic order, on the calling thread. At most a few topics per thread are in flight.
+     */
+    public void forEachQuery(TokenNormalizer normalizer, int parallelism, Consumer<Query> consumer)
+            throws IOException {
+        int workers = Math.max(1, parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        ArrayDeque<Future<Query>> pending = new ArrayDeque<>();
+        try {
+            Topic topic;
+            while ((topic = nextTopic()) != null) {
+                Topic t = topic;
+                pending.add(executor.submit(() -> toQuery(t, normalizer)));
+                if (pending.size() >= 4 * workers) consumer.accept(pending.poll().get());
+            }
+            while (!pending.isEmpty()) consumer.accept(pending.poll().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Topic preprocessing interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Topic preprocessing failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The query of a topic: its text tokenized, lowercased, without stop words and stemmed
+     */
+    public static Query toQuery(Topic topic, TokenNormalizer normalizer) {
+        Query q = new Query();
+        q.SetTopicId(topic.id());
+        q.SetQueryContent(normalizer.normalizeText(topic.text()));
+        return q;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static boolean keeps(Section section, Set<Field> fields) {
+        switch (section) {
+            case TITLE:
+                return fields.contains(Field.TITLE);
+            case DESC:
+                return fields.contains(Field.DESC);
+            case NARR:
+                return fields.contains(Field.NARR);
+            default:
+                return false;
+        }
+    }
+
+    private void append(Section section, Set<Field> fields, char c) {
+        if (section == Section.NUM) num.append(c);
+        else if (keeps(section, fields)) text.append(c);
+    }
+
+    /**
+     * Remove the "Description:" or "Narrative:" label from the start of the field that ends here
+     */
+    private void dropLabel(Section section, Set<Field> fields, int fieldStart) {
+        String label = LABELS[section.ordinal()];
+        if (label == null || !keeps(section, fields)) return;
+        int start = fieldStart;
+        while (start < text.length() && Character.isWhitespace(text.charAt(start))) start++;
+        if (text.length() - start < label.length()) return;
+        for (int i = 0; i < label.length(); i++)
+            if (Character.toLowerCase(text.charAt(start + i)) != label.charAt(i)) return;
+        text.delete(fieldStart, start + label.length());
+    }
+
+    /**
+     * First run of digits in the num field, "UNKNOWN" if there is none
+     */
+    private String topicId() {
+        int start = 0;
+        while (start < num.length() && !Character.isDigit(num.charAt(start))) start++;
+        int end = start;
+        while (end < num.length() && Character.isDigit(num.charAt(end))) end++;
+        return end > start ? num.substring(start, end) : "UNKNOWN";
+    }
+
+    private enum Tag {
+        TOP("top", null), END_TOP("/top", null), NUM("num", Section.NUM), TITLE("title", Section.TITLE),
+        DESC("desc", Section.DESC), NARR("narr", Section.NARR),
+        // The closing tags of the fields lead back to no field
+        END_NUM("/num", null), END_TITLE("/title", null), END_DESC("/desc", null), END_NARR("/narr", null);
+
+        final String name;
+        final Section section;
+
+        Tag(String name, Section section) {
+            this.name = name;
+            this.section = section;
+        }
+    }
+
+    /**
+     * Read the rest of a tag after '<', null if the chars are not a known tag
+     */
+    private Tag readTag() throws IOException {
+        tagLength = 0;
+        int c;
+        while (tagLength < MAX_TAG && (c = read()) >= 0) {
+            if (c == '>') {
+                for (Tag t : Tag.values()) if (matches(t.name)) return t;
+                tag[tagLength++] = '>';
+                return null;
+            }
+            tag[tagLength++] = (char) c;
+            if (c == '<') {
+                // A new tag may start here, give it back
+                tagLength--;
+                pos--;
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(String name) {
+        if (name.length() != tagLength) return false;
+        for (int i = 0; i < tagLength; i++)
+            if (Character.toLowerCase(tag[i]) != name.charAt(i)) return false;
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos++];
+    }
+
+}
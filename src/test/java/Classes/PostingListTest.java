@@ -0,0 +1,38 @@
+package Classes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class PostingListTest {
+
+	@Test
+	void aRangeOfSharedArraysOnlyCountsItsOwnPostings() {
+		int[] docids = new int[1000], freqs = new int[1000];
+		PostingList first = new PostingList(docids, freqs, 0, 10);
+		PostingList later = new PostingList(docids, freqs, 500, 10);
+		assertEquals(later.ramBytesUsed(), first.ramBytesUsed());
+		assertEquals(24 + 2 * (16 + 4 * 10), first.ramBytesUsed());
+	}
+
+	@Test
+	void arraysOfItsOwnCountWhole() {
+		// Room left over for postings of deleted documents still belongs to the list
+		PostingList postings = new PostingList(new int[100], new int[100], 90);
+		assertEquals(24 + 2 * (16 + 4 * 100), postings.ramBytesUsed());
+	}
+
+	@Test
+	void iteratesARangeInDocidOrder() throws Exception {
+		int[] docids = { 7, 1, 4, 9, 12, 30, 2 }, freqs = { 0, 1, 2, 3, 4, 5, 0 };
+		PostingsIterator it = new PostingList(docids, freqs, 1, 5).iterator();
+		assertEquals(-1, it.docid());
+		assertEquals(1, it.nextDoc());
+		assertEquals(9, it.advance(5));
+		assertEquals(3, it.freq());
+		assertEquals(9, it.advance(9));
+		assertEquals(30, it.advance(13));
+		assertEquals(PostingsIterator.NO_MORE_DOCS, it.nextDoc());
+	}
+
+}
@@ -0,0 +1,51 @@
+package Classes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import org.junit.jupiter.api.Test;
+
+class TokenNormalizerTest {
+
+	private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList("the", "of", "and", "in"));
+
+	/**
+	 * The tokenizer and the new Stemmer per token ExtractQuery used before TokenNormalizer
+	 */
+	private static String normalizeOneByOne( String text ) {
+		StringTokenizer st = new StringTokenizer(text, TokenNormalizer.DELIMITERS);
+		StringBuilder sb = new StringBuilder();
+		while (st.hasMoreTokens()) {
+			String token = st.nextToken().toLowerCase(Locale.US);
+			if (STOP_WORDS.contains(token))
+				continue;
+			Stemmer stemmer = new Stemmer();
+			stemmer.add(token.toCharArray(), token.length());
+			stemmer.stem();
+			sb.append(stemmer.toString()).append(' ');
+		}
+		return sb.toString();
+	}
+
+	@Test
+	void normalizesLikeAStemmerPerToken() {
+		StringBuilder longToken = new StringBuilder();
+		for (int n = 0; n < 30; n++)
+			longToken.append("relational");
+		String text = "The Nations of the World, and their RELATIONS; running (runs) in \"circles\"?\r\n"
+				+ longToken + " generalizations " + longToken + "\tTHE END. Übergrößen connected";
+		// Twice, the second pass is answered by the memo
+		TokenNormalizer normalizer = new TokenNormalizer(STOP_WORDS, 16);
+		for (int pass = 0; pass < 2; pass++)
+			assertEquals(normalizeOneByOne(text), normalizer.normalizeText(text));
+		assertEquals("", normalizer.normalize("OF", 0, 2));
+		assertEquals(normalizeOneByOne(longToken.toString()).trim(),
+				normalizer.normalize(longToken, 0, longToken.length()));
+	}
+
+}
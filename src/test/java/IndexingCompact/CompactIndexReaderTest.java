@@ -0,0 +1,76 @@
+package IndexingCompact;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CompactIndexReaderTest {
+
+	private Path dir;
+
+	@BeforeEach
+	void createDir() throws IOException {
+		dir = Files.createTempDirectory("hw3-compact");
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	private static void build( Path index ) throws IOException {
+		CompactIndexWriter writer = new CompactIndexWriter(index);
+		writer.setDocuments(new String[] { "doc-0", "doc-1", "doc-2" }, new int[] { 3, 1, 2 }, 3);
+		writer.startTerm("w1");
+		writer.addPosting(0, 2);
+		writer.addPosting(2, 1);
+		writer.finishTerm();
+		writer.startTerm("w2");
+		writer.addPosting(0, 1);
+		writer.addPosting(1, 1);
+		writer.addPosting(2, 1);
+		writer.finishTerm();
+		writer.close();
+	}
+
+	@Test
+	void aRebuiltIndexHasANewVersionAtOnce() throws IOException {
+		build(dir);
+		long version;
+		try (CompactIndexReader reader = new CompactIndexReader(dir)) {
+			version = reader.getIndexVersion();
+			assertEquals(3, reader.CollectionFreq("w1"));
+			assertEquals(1, reader.getDocid("doc-1"));
+		}
+		// Within the resolution of the file times, and over the files of the closed reader
+		build(dir);
+		try (CompactIndexReader reader = new CompactIndexReader(dir)) {
+			assertNotEquals(version, reader.getIndexVersion());
+			assertEquals("doc-2", reader.getDocno(2));
+		}
+	}
+
+	@Test
+	void refusesFilesOfDifferentBuilds() throws IOException {
+		Path other = dir.resolve("other");
+		build(dir);
+		build(other);
+		Files.copy(other.resolve(CompactFormat.DOCS_FILE), dir.resolve(CompactFormat.DOCS_FILE),
+				StandardCopyOption.REPLACE_EXISTING);
+		assertThrows(IOException.class, () -> new CompactIndexReader(dir));
+	}
+
+}
@@ -0,0 +1,77 @@
+package IndexingLucene;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DocnoDictionaryTest {
+
+	private Path dir;
+
+	@BeforeEach
+	void createDir() throws IOException {
+		dir = Files.createTempDirectory("hw3-docnos");
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	private static void build( Path index, int firstDocno ) throws IOException {
+		MyIndexWriter writer = new MyIndexWriter(index, 0, IndexingProfile.defaults());
+		for (int n = 0; n < 10; n++)
+			writer.index(CorpusGenerator.docno(firstDocno + n), "w1 w2");
+		writer.close();
+	}
+
+	@Test
+	void matchesTheCommitItWasBuiltFrom() throws IOException {
+		build(dir, 0);
+		try (Directory directory = FSDirectory.open(dir);
+				DirectoryReader ireader = DirectoryReader.open(directory);
+				DocnoDictionary docnos = DocnoDictionary.open(directory)) {
+			assertTrue(docnos.isFor(directory, ireader));
+		}
+	}
+
+	@Test
+	void ignoresTheDictionaryOfAnotherIndex() throws IOException {
+		Path index = dir.resolve("index"), other = dir.resolve("other");
+		build(index, 0);
+		build(other, 100);
+		Files.copy(other.resolve(DocnoDictionary.FILE_NAME), index.resolve(DocnoDictionary.FILE_NAME),
+				StandardCopyOption.REPLACE_EXISTING);
+
+		try (Directory directory = FSDirectory.open(index);
+				DirectoryReader ireader = DirectoryReader.open(directory);
+				DocnoDictionary docnos = DocnoDictionary.open(directory)) {
+			assertFalse(docnos.isFor(directory, ireader));
+		}
+		// The stored fields answer instead
+		try (MyIndexReader reader = new MyIndexReader(index)) {
+			for (int n = 0; n < 10; n++) {
+				int docid = reader.getDocid(CorpusGenerator.docno(n));
+				assertEquals(CorpusGenerator.docno(n), reader.getDocno(docid));
+			}
+			assertEquals(-1, reader.getDocid(CorpusGenerator.docno(100)));
+		}
+	}
+
+}
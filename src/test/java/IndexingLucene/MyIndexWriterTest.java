@@ -0,0 +1,85 @@
+package IndexingLucene;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MyIndexWriterTest {
+
+	private Path dir;
+
+	@BeforeEach
+	void createDir() throws IOException {
+		dir = Files.createTempDirectory("hw3-writer");
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	void abortStopsTheThreadsAndReleasesTheIndex() throws IOException {
+		MyIndexWriter writer = new MyIndexWriter(dir, 2, IndexingProfile.defaults());
+		for (int n = 0; n < 100; n++)
+			writer.index(CorpusGenerator.docno(n), "w1 w2 w3");
+		writer.abort();
+		assertFalse(Thread.getAllStackTraces().keySet().stream()
+				.anyMatch(t -> t.getName().startsWith("MyIndexWriter-") && t.isAlive()));
+
+		// The lock is free, a new build succeeds
+		MyIndexWriter again = new MyIndexWriter(dir, 0, IndexingProfile.defaults());
+		again.index(CorpusGenerator.docno(0), "w1 w2");
+		again.close();
+		try (MyIndexReader reader = new MyIndexReader(dir)) {
+			assertEquals(1, reader.maxDoc());
+		}
+	}
+
+	@Test
+	void countsAFlushForEverySegmentItWrote() throws IOException {
+		// Ten segments of ten documents, then merged into one
+		IndexingProfile profile = IndexingProfile.defaults()
+				.setMaxBufferedDocs(10)
+				.setMergePolicy(IndexingProfile.MergePolicyKind.NONE);
+		MyIndexWriter writer = new MyIndexWriter(dir, 0, profile);
+		for (int n = 0; n < 100; n++)
+			writer.index(CorpusGenerator.docno(n), "w1 w2 w3");
+		writer.close();
+		assertEquals(10, writer.getBuildReport().getFlushCount());
+		assertEquals(10, writer.getBuildReport().getSegments().size());
+
+		// Appended to the same index, and force merged with the segments already there
+		MyIndexWriter more = new MyIndexWriter(dir, 0, IndexingProfile.defaults()
+				.setMaxBufferedDocs(10)
+				.setForceMergeSegments(1));
+		for (int n = 100; n < 150; n++)
+			more.index(CorpusGenerator.docno(n), "w1 w2 w3");
+		more.close();
+		assertEquals(5, more.getBuildReport().getFlushCount());
+		assertEquals(1, more.getBuildReport().getSegments().size());
+	}
+
+	@Test
+	void abortAfterCloseIsHarmless() throws IOException {
+		MyIndexWriter writer = new MyIndexWriter(dir, 0, IndexingProfile.defaults());
+		writer.index(CorpusGenerator.docno(0), "w1");
+		writer.close();
+		writer.abort();
+		try (MyIndexReader reader = new MyIndexReader(dir)) {
+			assertEquals(1, reader.maxDoc());
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package IndexingLucene;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The NIO reader must read a corpus like the BufferedReader.readLine pairs it replaced, on a corpus laid out
+ * against its buffers: 4 MB of bytes per read and 1 MB of chars per decoded chunk.
+ */
+class PreProcessedCorpusReaderTest {
+
+	private static final int BYTE_BUFFER = 1 << 22;
+	private static final int CHAR_BUFFER = 1 << 20;
+
+	private static Path corpus;
+
+	/**
+	 * Corpus text that tracks its length in UTF-8 bytes as well as in chars.
+	 */
+	private static class Corpus {
+		final StringBuilder text = new StringBuilder();
+		long bytes;
+
+		Corpus append( String s ) {
+			text.append(s);
+			bytes += s.getBytes(StandardCharsets.UTF_8).length;
+			return this;
+		}
+
+		/**
+		 * ASCII words up to chars in total.
+		 */
+		Corpus padChars( long chars ) {
+			while (text.length() < chars)
+				append(text.length() % 10 == 9 ? " " : "w");
+			return this;
+		}
+
+		Corpus padBytes( long count ) {
+			while (bytes < count)
+				append(bytes % 10 == 9 ? " " : "w");
+			return this;
+		}
+	}
+
+	@BeforeAll
+	static void writeCorpus() throws IOException {
+		Corpus c = new Corpus();
+		// A surrogate pair split by the end of the first decoded chunk
+		c.append("doc-0\n").padChars(CHAR_BUFFER - 1).append("😀 smile\r\n");
+		// Longer than the char buffer, with two-byte chars, ending in a CR and LF split between two chunks:
+		// the second chunk starts at the surrogate pair and holds CHAR_BUFFER chars
+		c.append("doc-1\r\n");
+		while (c.text.length() < 3L * CHAR_BUFFER - 2)
+			c.append(c.text.length() % 100 == 0 ? "é" : c.text.length() % 10 == 0 ? " " : "w");
+		assertEquals(3L * CHAR_BUFFER - 2, c.text.length());
+		c.append("\r\n");
+		// Short documents with both line endings, up to a three-byte char split by the end of the first read
+		for (int n = 2; c.bytes < BYTE_BUFFER - 1000; n++)
+			c.append("doc-" + n + (n % 2 == 0 ? "\r\n" : "\n")).append("w" + n + " x y z" + (n % 2 == 0 ? "\n" : "\r\n"));
+		c.append("doc-euro\r\n").padBytes(BYTE_BUFFER - 1).append("€ euro\r\n");
+		// An empty content line, and a last line without its terminator
+		c.append("doc-empty\r\n\r\n").append("doc-last\n").append("last content");
+
+		corpus = Files.createTempFile("hw3-corpus", ".trectext");
+		Files.write(corpus, c.text.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@AfterAll
+	static void deleteCorpus() throws IOException {
+		if (corpus != null)
+			Files.delete(corpus);
+	}
+
+	/**
+	 * The docno and content lines read the way the replaced reader did.
+	 */
+	private static List<String[]> readLinePairs() throws IOException {
+		List<String[]> docs = new ArrayList<>();
+		try (BufferedReader br = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+			String docno;
+			while ((docno = br.readLine()) != null)
+				docs.add(new String[] { docno, br.readLine() });
+		}
+		return docs;
+	}
+
+	@Test
+	void readsDocumentsLikeReadLine() throws IOException {
+		List<String[]> expected = readLinePairs();
+		PreProcessedCorpusReader reader = new PreProcessedCorpusReader(corpus);
+		CorpusDocument doc = new CorpusDocument();
+		int count = 0;
+		boolean longDocument = false;
+		while (reader.nextDocument(doc)) {
+			String[] want = expected.get(count++);
+			assertEquals(want[0], doc.docno().toString());
+			assertEquals(want[1], doc.content().toString(), want[0]);
+			longDocument |= doc.content().length() > CHAR_BUFFER;
+		}
+		assertEquals(expected.size(), count);
+		assertTrue(longDocument);
+		assertEquals("doc-last", expected.get(count - 1)[0]);
+		assertFalse(reader.nextDocument(doc));
+	}
+
+	@Test
+	void mapAdapterReadsDocumentsLikeReadLine() throws IOException {
+		List<String[]> expected = readLinePairs();
+		PreProcessedCorpusReader reader = new PreProcessedCorpusReader(corpus);
+		for (String[] want : expected) {
+			Map<String, String> doc = reader.nextDocument();
+			assertEquals(Collections.singletonMap(want[0], want[1]), doc);
+		}
+		assertNull(reader.nextDocument());
+	}
+
+}
@@ -0,0 +1,75 @@
+package IndexingLucene;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TermStatsTableTest {
+
+	private Path dir;
+
+	@BeforeEach
+	void createDir() throws IOException {
+		dir = Files.createTempDirectory("hw3-termstats");
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	private static void build( Path index, String content ) throws IOException {
+		MyIndexWriter writer = new MyIndexWriter(index, 0, IndexingProfile.defaults());
+		for (int n = 0; n < 10; n++)
+			writer.index(CorpusGenerator.docno(n), content);
+		writer.close();
+	}
+
+	@Test
+	void matchesTheCommitItWasBuiltFrom() throws IOException {
+		build(dir, "w1 w2");
+		try (Directory directory = FSDirectory.open(dir);
+				DirectoryReader ireader = DirectoryReader.open(directory);
+				TermStatsTable stats = TermStatsTable.open(directory)) {
+			assertTrue(stats.isFor(directory, ireader));
+		}
+	}
+
+	@Test
+	void ignoresTheTableOfAnotherIndexWithTheSameDocumentCount() throws IOException {
+		Path index = dir.resolve("index"), other = dir.resolve("other");
+		build(index, "w1 w2");
+		build(other, "w1 w1 w1");
+		Files.copy(other.resolve(TermStatsTable.FILE_NAME), index.resolve(TermStatsTable.FILE_NAME),
+				StandardCopyOption.REPLACE_EXISTING);
+
+		try (Directory directory = FSDirectory.open(index);
+				DirectoryReader ireader = DirectoryReader.open(directory);
+				TermStatsTable stats = TermStatsTable.open(directory)) {
+			assertEquals(ireader.numDocs(), stats.getDocCount());
+			assertFalse(stats.isFor(directory, ireader));
+		}
+		try (MyIndexReader reader = new MyIndexReader(index)) {
+			assertEquals(10, reader.CollectionFreq("w1"));
+			assertEquals(1, reader.maxTermFreq("w1"));
+			assertEquals(20, reader.getTotalContentLength());
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package Search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedCacheTest {
+
+    private static BoundedCache<String, long[]> cache(long maxBytes) {
+        return new BoundedCache<>(maxBytes, BoundedCache::stringBytes, v -> 8L * v.length);
+    }
+
+    @Test
+    void keepsAnEntryLargerThanOneSegmentsShare() {
+        BoundedCache<String, long[]> cache = cache(1 << 20);
+        // Half the budget, far more than 1/16 of it
+        cache.put("big", new long[1 << 16]);
+        assertNotNull(cache.getIfPresent("big"));
+        assertEquals(0, cache.rejections());
+    }
+
+    @Test
+    void rejectsAnEntryLargerThanTheBudget() {
+        BoundedCache<String, long[]> cache = cache(1 << 20);
+        cache.put("huge", new long[1 << 17]);
+        assertNull(cache.getIfPresent("huge"));
+        assertEquals(1, cache.rejections());
+        assertEquals(0, cache.memoryBytes());
+    }
+
+    @Test
+    void evictsAcrossSegmentsToStayWithinTheBudget() {
+        BoundedCache<String, long[]> cache = cache(1 << 20);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("k" + i, new long[1000]);
+            assertTrue(cache.memoryBytes() <= cache.maxBytes());
+        }
+        assertTrue(cache.evictions() > 0);
+        // Entries of any segment make room for a big one
+        cache.put("big", new long[100_000]);
+        assertNotNull(cache.getIfPresent("big"));
+        assertTrue(cache.memoryBytes() <= cache.maxBytes());
+        cache.clear();
+        assertEquals(0, cache.memoryBytes());
+        assertEquals(0, cache.size());
+    }
+
+}
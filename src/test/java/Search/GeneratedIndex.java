@@ -0,0 +1,101 @@
+package Search;
+
+import Classes.Query;
+import Classes.TokenNormalizer;
+import IndexingLucene.CorpusDocument;
+import IndexingLucene.CorpusGenerator;
+import IndexingLucene.IndexingProfile;
+import IndexingLucene.MyIndexReader;
+import IndexingLucene.MyIndexWriter;
+import IndexingLucene.PreProcessedCorpusReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Shared fixture of the retrieval model tests, the test-sized counterpart of Benchmarks.BenchmarkData: a
+ * corpus and topics written by CorpusGenerator into a temporary directory, indexed by MyIndexWriter, and
+ * the topics parsed into title and description queries. Everything derives from a fixed seed.
+ */
+final class GeneratedIndex implements Closeable {
+
+    static final long SEED = 2140;
+    static final int TOPICS = 20;
+
+    final Path dir;
+    final MyIndexReader reader;
+    final List<Query> queries;
+
+    private GeneratedIndex(Path dir, MyIndexReader reader, List<Query> queries) {
+        this.dir = dir;
+        this.reader = reader;
+        this.queries = queries;
+    }
+
+    /**
+     * Generate documents of 20 to 200 tokens over vocabulary terms, index them with profile and open the index
+     */
+    static GeneratedIndex build(int documents, int vocabulary, IndexingProfile profile) throws IOException {
+        Path dir = Files.createTempDirectory("hw3-search");
+        try {
+            CorpusGenerator generator = new CorpusGenerator()
+                    .setSeed(SEED)
+                    .setDocuments(documents)
+                    .setVocabulary(vocabulary)
+                    .setLengths(CorpusGenerator.LengthModel.UNIFORM, 20, 200)
+                    .setTopics(TOPICS);
+            Path corpus = dir.resolve("results.trectext");
+            Path topics = dir.resolve("topics.txt");
+            generator.writeCorpus(corpus);
+            generator.writeTopics(topics);
+
+            Path index = dir.resolve("index");
+            MyIndexWriter writer = new MyIndexWriter(index, 0, profile);
+            PreProcessedCorpusReader corpusReader = new PreProcessedCorpusReader(corpus);
+            CorpusDocument doc = new CorpusDocument();
+            while (corpusReader.nextDocument(doc)) writer.index(doc);
+            writer.close();
+            return new GeneratedIndex(dir, new MyIndexReader(index), queries(topics));
+        } catch (IOException | RuntimeException e) {
+            delete(dir);
+            throw e;
+        }
+    }
+
+    private static List<Query> queries(Path topics) throws IOException {
+        List<Query> queries = new ArrayList<>();
+        TokenNormalizer normalizer = new TokenNormalizer(Collections.emptySet(), 1 << 10);
+        try (TopicParser parser = new TopicParser(topics, EnumSet.of(TopicParser.Field.TITLE, TopicParser.Field.DESC))) {
+            TopicParser.Topic topic;
+            while ((topic = parser.nextTopic()) != null) queries.add(TopicParser.toQuery(topic, normalizer));
+        }
+        return queries;
+    }
+
+    /**
+     * Close the reader and delete the fixture directory
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+}
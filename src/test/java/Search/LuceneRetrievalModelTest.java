@@ -0,0 +1,123 @@
+package Search;
+
+import Classes.Document;
+import Classes.Query;
+import IndexingLucene.CorpusGenerator;
+import IndexingLucene.IndexingProfile;
+import IndexingLucene.MyIndexReader;
+import org.apache.lucene.search.BooleanQuery;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LuceneRetrievalModel must rank like QueryRetrievalModel in LOG mode, on a small generated index.
+ */
+class LuceneRetrievalModelTest {
+
+    private static GeneratedIndex fixture;
+    private static MyIndexReader reader;
+    private static List<Query> queries;
+
+    @BeforeAll
+    static void buildIndex() throws IOException {
+        fixture = GeneratedIndex.build(2000, 5000, IndexingProfile.defaults());
+        reader = fixture.reader;
+        queries = fixture.queries;
+    }
+
+    @AfterAll
+    static void deleteIndex() throws IOException {
+        if (fixture != null) fixture.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {20, 500})
+    void ranksTopicsLikeQueryRetrievalModel(int topN) throws IOException {
+        QueryRetrievalModel expected = new QueryRetrievalModel(reader);
+        LuceneRetrievalModel actual = new LuceneRetrievalModel(reader);
+        assertFalse(queries.isEmpty());
+        for (Query query : queries)
+            assertSameRanking(query, expected.retrieveQuery(query, topN), actual.retrieveQuery(query, topN));
+    }
+
+    @Test
+    void returnsEveryCandidateForAnUnboundedTopN() throws IOException {
+        Query query = queries.get(0);
+        List<Document> expected = new QueryRetrievalModel(reader).retrieveQuery(query, Integer.MAX_VALUE);
+        assertFalse(expected.isEmpty());
+        assertSameRanking(query, expected, new LuceneRetrievalModel(reader).retrieveQuery(query, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void skipsAbsentTerms() throws IOException {
+        QueryRetrievalModel expected = new QueryRetrievalModel(reader);
+        LuceneRetrievalModel actual = new LuceneRetrievalModel(reader);
+        for (Query topic : queries) {
+            Query query = query(topic.GetTopicId(), "absentterm " + topic.GetQueryContent().trim() + " absentterm");
+            List<Document> withAbsent = actual.retrieveQuery(query, 100);
+            assertSameRanking(query, expected.retrieveQuery(query, 100), withAbsent);
+            // An absent term changes no score
+            assertSameRanking(query, actual.retrieveQuery(topic, 100), withAbsent);
+        }
+    }
+
+    @Test
+    void searchesQueriesLongerThanTheClauseLimit() throws IOException {
+        // Every term of the vocabulary once, far more distinct terms than BooleanQuery allows in one query
+        StringBuilder content = new StringBuilder();
+        for (int rank = 0; rank < 5000; rank++) content.append(CorpusGenerator.term(rank)).append(' ');
+        assertTrue(5000 > BooleanQuery.getMaxClauseCount());
+        Query query = query("long", content.toString().trim());
+        assertSameRanking(query, new QueryRetrievalModel(reader).retrieveQuery(query, 100),
+                new LuceneRetrievalModel(reader).retrieveQuery(query, 100));
+    }
+
+    @Test
+    void findsNothingForAbsentTermsOnly() throws IOException {
+        Query query = query("0", "absentterm anotherabsentterm");
+        assertTrue(new QueryRetrievalModel(reader).retrieveQuery(query, 20).isEmpty());
+        assertTrue(new LuceneRetrievalModel(reader).retrieveQuery(query, 20).isEmpty());
+    }
+
+    private static Query query(String topicId, String content) {
+        Query query = new Query();
+        query.SetTopicId(topicId);
+        query.SetQueryContent(content);
+        return query;
+    }
+
+    /**
+     * Same number of results and, at every rank, scores within LuceneRetrievalModel.SCORE_TOLERANCE and the
+     * same docno. A different docno is only allowed for a document tied with the expected one: it ranks
+     * elsewhere in the expected results with a score that close, or past the last one at the cut-off score.
+     */
+    private static void assertSameRanking(Query query, List<Document> expected, List<Document> actual) {
+        assertEquals(expected.size(), actual.size(), "results of query " + query.GetTopicId());
+        for (int i = 0; i < expected.size(); i++) {
+            double want = expected.get(i).score(), got = actual.get(i).score();
+            String where = String.format("query %s rank %d: %s %s, expected %s %s",
+                    query.GetTopicId(), i + 1, actual.get(i).docno(), got, expected.get(i).docno(), want);
+            assertTrue(tied(want, got), where);
+            if (actual.get(i).docno().equals(expected.get(i).docno())) continue;
+            int k = 0;
+            while (k < expected.size() && !expected.get(k).docno().equals(actual.get(i).docno())) k++;
+            double swapped = expected.get(k < expected.size() ? k : expected.size() - 1).score();
+            assertTrue(tied(want, swapped), "untied swap, " + where);
+        }
+    }
+
+    private static boolean tied(double a, double b) {
+        return Math.abs(a - b) / Math.max(1, Math.abs(a)) <= LuceneRetrievalModel.SCORE_TOLERANCE;
+    }
+
+}
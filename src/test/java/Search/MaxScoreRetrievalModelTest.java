@@ -0,0 +1,151 @@
+package Search;
+
+import Classes.Document;
+import Classes.IndexAccess;
+import Classes.PostingList;
+import Classes.PostingsIterator;
+import Classes.Query;
+import IndexingCompact.MemoryIndexReader;
+import IndexingLucene.IndexingProfile;
+import IndexingLucene.MyIndexReader;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MaxScoreRetrievalModel must return exactly the top N of QueryRetrievalModel, on a generated index of
+ * several segments read through Lucene and loaded in memory.
+ */
+class MaxScoreRetrievalModelTest {
+
+    private static GeneratedIndex fixture;
+    private static MyIndexReader reader;
+    private static MemoryIndexReader memory;
+    private static List<Query> queries;
+
+    @BeforeAll
+    static void buildIndex() throws IOException {
+        // Unmerged segments of 500 documents, so postings span several leaves
+        fixture = GeneratedIndex.build(3000, 2000, IndexingProfile.defaults()
+                .setMaxBufferedDocs(500)
+                .setMergePolicy(IndexingProfile.MergePolicyKind.NONE));
+        reader = fixture.reader;
+        memory = MemoryIndexReader.load(reader);
+        queries = fixture.queries;
+    }
+
+    @AfterAll
+    static void deleteIndex() throws IOException {
+        if (memory != null) memory.close();
+        if (fixture != null) fixture.close();
+    }
+
+    @Test
+    void indexHasSeveralSegments() {
+        assertTrue(reader.getIndexReader().leaves().size() > 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 20, 500})
+    void ranksLikeQueryRetrievalModel(int topN) throws IOException {
+        assertFalse(queries.isEmpty());
+        for (IndexAccess index : new IndexAccess[]{reader, memory}) {
+            QueryRetrievalModel expected = new QueryRetrievalModel(index);
+            MaxScoreRetrievalModel actual = new MaxScoreRetrievalModel(index);
+            for (Query query : queries)
+                assertSameRanking(query, expected.retrieveQuery(query, topN), actual.retrieveQuery(query, topN));
+        }
+    }
+
+    @Test
+    void walksCachedPostingsLikeTheIndex() throws IOException {
+        // The first model fills the shared cache, MaxScore then walks the cached lists
+        QueryRetrievalModel expected = new QueryRetrievalModel(reader);
+        MaxScoreRetrievalModel actual = new MaxScoreRetrievalModel(reader, expected.getPostingsCache());
+        for (Query query : queries) {
+            List<Document> ranking = expected.retrieveQuery(query, 50);
+            assertSameRanking(query, ranking, actual.retrieveQuery(query, 50));
+        }
+        assertTrue(expected.getPostingsCache().size() > 0);
+    }
+
+    @Test
+    void ranksLikeQueryRetrievalModelOnManyThreads() throws Exception {
+        QueryRetrievalModel expected = new QueryRetrievalModel(reader);
+        MaxScoreRetrievalModel actual = new MaxScoreRetrievalModel(reader);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Document>>> rankings = new ArrayList<>();
+            for (int round = 0; round < 4; round++)
+                for (Query query : queries) rankings.add(executor.submit(() -> actual.retrieveQuery(query, 100)));
+            for (int i = 0; i < rankings.size(); i++) {
+                Query query = queries.get(i % queries.size());
+                assertSameRanking(query, expected.retrieveQuery(query, 100), rankings.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void advancesLikeTheLoadedPostings() throws IOException {
+        Random random = new Random(2140);
+        for (Query query : queries) {
+            for (String term : query.GetQueryContent().trim().split(" ")) {
+                PostingList postings = reader.getPostings(term);
+                if (postings == null) continue;
+                for (IndexAccess index : new IndexAccess[]{reader, memory}) {
+                    PostingsIterator it = index.openPostings(term);
+                    assertEquals(-1, it.docid());
+                    int ix = -1;
+                    while (true) {
+                        // Mix single steps with jumps of up to a few hundred docids
+                        int target = random.nextBoolean() ? it.docid() + 1 : it.docid() + 1 + random.nextInt(300);
+                        while (ix < postings.size() && (ix < 0 || postings.docid(ix) < target)) ix++;
+                        int docid = it.advance(target);
+                        if (ix == postings.size()) {
+                            assertEquals(PostingsIterator.NO_MORE_DOCS, docid, term);
+                            break;
+                        }
+                        assertEquals(postings.docid(ix), docid, term);
+                        assertEquals(postings.freq(ix), it.freq(), term);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void findsNothingForAbsentTermsOnly() throws IOException {
+        Query query = new Query();
+        query.SetTopicId("0");
+        query.SetQueryContent("absentterm anotherabsentterm");
+        assertTrue(new MaxScoreRetrievalModel(reader).retrieveQuery(query, 20).isEmpty());
+        assertNull(reader.openPostings("absentterm"));
+    }
+
+    private static void assertSameRanking(Query query, List<Document> expected, List<Document> actual) {
+        assertEquals(expected.size(), actual.size(), "results of query " + query.GetTopicId());
+        for (int i = 0; i < expected.size(); i++) {
+            String where = "query " + query.GetTopicId() + " rank " + (i + 1);
+            assertEquals(expected.get(i).docno(), actual.get(i).docno(), where);
+            assertEquals(expected.get(i).score(), actual.get(i).score(), where);
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package Search;
+
+import Classes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class QueryResultCacheTest {
+
+    private static final List<Document> RESULTS = Arrays.asList(
+            new Document("3", "doc-3", -10.0), new Document("1", "doc-1", -10.0), new Document("7", "doc-7", -12.5));
+
+    private static String key(String query, QueryRetrievalModel.ScoringMode mode) {
+        return QueryResultCache.key(query.split(" "), 2000, mode);
+    }
+
+    @Test
+    void sharesAnEntryOnlyBetweenQueriesScoredInTheSameOrder() {
+        QueryRetrievalModel.ScoringMode log = QueryRetrievalModel.ScoringMode.LOG;
+        assertEquals(key("a b a", log), key("a a b", log));
+        assertNotEquals(key("a b a", log), key("b a a", log));
+        assertNotEquals(key("a b", log), key("a b b", log));
+        QueryRetrievalModel.ScoringMode product = QueryRetrievalModel.ScoringMode.PRODUCT;
+        assertNotEquals(key("a b a", product), key("a a b", product));
+    }
+
+    @Test
+    void servesSmallerTopNsOfTheSameIndexVersion() {
+        QueryResultCache cache = new QueryResultCache(1 << 20);
+        cache.put("q", 3, 1, RESULTS);
+        List<Document> top2 = cache.get("q", 2, 1);
+        assertNotNull(top2);
+        assertEquals(2, top2.size());
+        assertEquals("doc-1", top2.get(1).docno());
+        assertNull(cache.get("q", 4, 1));
+        assertNull(cache.get("q", 3, 2));
+        assertEquals(1, cache.invalidations());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void dropsAnEntryPastItsTimeToLive() throws InterruptedException {
+        QueryResultCache cache = new QueryResultCache(1 << 20, 1, TimeUnit.MILLISECONDS);
+        cache.put("q", 3, 1, RESULTS);
+        assertEquals(1, cache.size());
+        Thread.sleep(5);
+        assertNull(cache.get("q", 3, 1));
+        assertEquals(1, cache.expired());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.memoryBytes());
+    }
+
+}
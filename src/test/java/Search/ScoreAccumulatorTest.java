@@ -0,0 +1,48 @@
+package Search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScoreAccumulatorTest {
+
+    @Test
+    void keepsTheTfsOfEveryTermAddedToACandidate() {
+        ScoreAccumulator accumulator = new ScoreAccumulator(10);
+        accumulator.reset();
+        accumulator.add(7, 0, 3, 1.0);
+        accumulator.add(2, 0, 1, 0.5);
+        accumulator.add(7, 2, 4, 2.0);
+        assertEquals(2, accumulator.size());
+        assertEquals(7, accumulator.docid(0));
+        assertEquals(3, accumulator.tf(0, 0));
+        assertEquals(0, accumulator.tf(0, 1));
+        assertEquals(4, accumulator.tf(0, 2));
+        assertEquals(3.0, accumulator.score(0));
+        assertEquals(1, accumulator.tf(1, 0));
+        assertEquals(0, accumulator.tf(1, 2));
+
+        accumulator.reset();
+        accumulator.add(2, 1, 5, 0.25);
+        assertEquals(1, accumulator.size());
+        assertEquals(0, accumulator.tf(0, 0));
+        assertEquals(5, accumulator.tf(0, 1));
+        assertEquals(0.25, accumulator.score(0));
+    }
+
+    @Test
+    void growsWithTheCandidatesAndPostings() {
+        int maxDoc = 100_000, terms = 50;
+        ScoreAccumulator accumulator = new ScoreAccumulator(maxDoc);
+        accumulator.reset();
+        // Every term in every document: 5M tfs, far past the initial arrays
+        for (int ord = 0; ord < terms; ord++)
+            for (int docid = 0; docid < maxDoc; docid++) accumulator.add(docid, ord, ord + 1, 1);
+        assertEquals(maxDoc, accumulator.size());
+        for (int slot = 0; slot < maxDoc; slot += 9_999) {
+            assertEquals(terms, accumulator.score(slot));
+            for (int ord = 0; ord < terms; ord++) assertEquals(ord + 1, accumulator.tf(slot, ord));
+        }
+    }
+
+}
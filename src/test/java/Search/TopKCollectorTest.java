@@ -0,0 +1,40 @@
+package Search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class TopKCollectorTest {
+
+    @Test
+    void keepsTheBestPairsInRankOrder() {
+        TopKCollector topK = new TopKCollector(3);
+        double[] scores = {0.5, 2.0, 1.0, 2.0, -1.0, 1.5};
+        for (int docid = 0; docid < scores.length; docid++) topK.collect(docid, scores[docid]);
+        int[] docids = new int[3];
+        double[] best = new double[3];
+        assertEquals(3, topK.drainTo(docids, best));
+        // Equal scores rank the smaller docid first
+        assertArrayEquals(new int[]{1, 3, 5}, docids);
+        assertArrayEquals(new double[]{2.0, 2.0, 1.5}, best);
+    }
+
+    @Test
+    void unboundedKOnlyHoldsTheCandidates() {
+        TopKCollector topK = new TopKCollector(Integer.MAX_VALUE);
+        for (int docid = 0; docid < 1000; docid++) topK.collect(docid, docid % 7);
+        assertEquals(1000, topK.size());
+        assertFalse(topK.isFull());
+        int[] docids = new int[1000];
+        double[] scores = new double[1000];
+        topK.drainTo(docids, scores);
+        for (int i = 1; i < 1000; i++)
+            assertFalse(scores[i] > scores[i - 1] || (scores[i] == scores[i - 1] && docids[i] < docids[i - 1]));
+
+        topK.reset(Integer.MAX_VALUE);
+        assertEquals(0, topK.size());
+    }
+
+}
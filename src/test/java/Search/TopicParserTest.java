@@ -0,0 +1,142 @@
+package Search;
+
+import Classes.Query;
+import Classes.TokenNormalizer;
+import IndexingLucene.CorpusGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TopicParserTest {
+
+    private static final TokenNormalizer NORMALIZER = new TokenNormalizer(Collections.emptySet(), 1 << 10);
+
+    // ExtractQuery read the topic number from the line right after <top>
+    private static final String TREC_TOPICS = "<top>\n"
+            + "<num> Number: 401 \n"
+            + "<title> foreign minorities, Germany \n\n"
+            + "<desc> Description: \n"
+            + "What language and cultural differences impede the integration \n"
+            + "of foreign minorities in Germany? \n\n"
+            + "<narr> Narrative: \n"
+            + "A relevant document will focus on the causes of the lack of\n"
+            + "integration in a significant way.\n\n"
+            + "</top>\n\n\n"
+            + "<top>\r\n"
+            + "<num> Number: 402 \r\n"
+            + "<title> behavioral genetics \r\n\r\n"
+            + "<desc> Description: \r\n"
+            + "What is happening in the field of behavioral genetics, the study of the relative influence \r\n"
+            + "of genetic and environmental factors on an individual's behavior or personality? \r\n\r\n"
+            + "<narr> Narrative: \r\n"
+            + "Documents describing genetic or environmental factors relating to understanding and preventing \r\n"
+            + "substance abuse and addictions are relevant.\r\n\r\n"
+            + "</top>\r\n";
+
+    /**
+     * The line by line parsing of the ExtractQuery the parser replaced, pre-processed the same way
+     */
+    private static List<Query> extractQueryOutput(String topics, boolean titleOnly) throws IOException {
+        List<Query> queries = new ArrayList<>();
+        Pattern number = Pattern.compile("[0-9]+");
+        try (BufferedReader reader = new BufferedReader(new StringReader(topics))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().toLowerCase(Locale.US).startsWith("<top>")) continue;
+                Matcher m = number.matcher(reader.readLine());
+                StringBuilder sb = new StringBuilder();
+                boolean hasTitleSaved = false;
+                while (!((line = reader.readLine().trim()).startsWith("</top>"))) {
+                    if ((titleOnly && hasTitleSaved) || line.isEmpty()) continue;
+                    String lcLine = line.toLowerCase(Locale.US).trim();
+                    sb.append(' ');
+                    if (lcLine.startsWith("<title>")) {
+                        line = line.substring(8);
+                        if (titleOnly) {
+                            sb.append(line);
+                            hasTitleSaved = true;
+                            continue;
+                        }
+                    } else if (lcLine.startsWith("<desc>") || lcLine.startsWith("<narr>")) {
+                        continue;
+                    }
+                    sb.append(line);
+                }
+                Query q = new Query();
+                q.SetTopicId(m.find() ? m.group(0).trim() : "UNKNOWN");
+                q.SetQueryContent(NORMALIZER.normalizeText(sb));
+                queries.add(q);
+            }
+        }
+        return queries;
+    }
+
+    private static List<Query> parse(String topics, boolean titleOnly) throws IOException {
+        List<Query> queries = new ArrayList<>();
+        EnumSet<TopicParser.Field> fields = titleOnly ? EnumSet.of(TopicParser.Field.TITLE)
+                : EnumSet.allOf(TopicParser.Field.class);
+        try (TopicParser parser = new TopicParser(new StringReader(topics), fields)) {
+            TopicParser.Topic topic;
+            while ((topic = parser.nextTopic()) != null) queries.add(TopicParser.toQuery(topic, NORMALIZER));
+        }
+        return queries;
+    }
+
+    private static void assertSameQueries(List<Query> expected, List<Query> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).GetTopicId(), actual.get(i).GetTopicId());
+            assertEquals(expected.get(i).GetQueryContent(), actual.get(i).GetQueryContent(),
+                    "topic " + expected.get(i).GetTopicId());
+        }
+    }
+
+    @Test
+    void parsesTrecTopicsLikeExtractQuery() throws IOException {
+        for (boolean titleOnly : new boolean[]{true, false})
+            assertSameQueries(extractQueryOutput(TREC_TOPICS, titleOnly), parse(TREC_TOPICS, titleOnly));
+    }
+
+    @Test
+    void parsesGeneratedTopicsLikeExtractQuery() throws IOException {
+        Path file = Files.createTempFile("hw3-topics", ".txt");
+        try {
+            new CorpusGenerator().setSeed(2140).setTopics(50).writeTopics(file);
+            String topics = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            for (boolean titleOnly : new boolean[]{true, false})
+                assertSameQueries(extractQueryOutput(topics, titleOnly), parse(topics, titleOnly));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void closingTagsEndTheirField() throws IOException {
+        String topics = "<top><num>7</num><TITLE>first title</TITLE>\n"
+                + "<desc>Description: the desc</desc> between fields <narr>Narrative: the narr</narr></top>";
+        try (TopicParser parser = new TopicParser(new StringReader(topics), EnumSet.allOf(TopicParser.Field.class))) {
+            TopicParser.Topic topic = parser.nextTopic();
+            assertEquals("7", topic.id());
+            assertEquals(Arrays.asList("first", "title", "the", "desc", "the", "narr"),
+                    Arrays.asList(topic.text().trim().split("\\s+")));
+            assertNull(parser.nextTopic());
+        }
+    }
+
+}